@@ -1,48 +1,69 @@
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import soot.*;
-import soot.util.Chain;
 import soot.jimple.*;
+import soot.options.Options;
 import soot.jimple.internal.JAssignStmt;
 import soot.jimple.internal.JNewExpr;
 import soot.toolkits.graph.*;
 import soot.toolkits.scalar.BackwardFlowAnalysis;
 import soot.toolkits.scalar.FlowSet;
+import soot.toolkits.scalar.LiveLocals;
+import soot.toolkits.scalar.SimpleLiveLocals;
 
 public class AnalysisTransformer extends BodyTransformer {
-    static Map<String, List<String>> allResults = new TreeMap<>();
-    public static void printResults() {
-
-        for (String key : allResults.keySet()) {
-
-            System.out.println(key);
-
-            List<String> lines = allResults.get(key);
-
-            Collections.sort(lines, (a, b) -> {
-                int la = Integer.parseInt(a.split(":")[0]);
-                int lb = Integer.parseInt(b.split(":")[0]);
-                return Integer.compare(la, lb);
-            });
+    // phase options of jtp.dfa, set with -p jtp.dfa name:value
+    static final String DECLARED_OPTIONS = "enabled delta sparse summaries metrics rewrite liveness gc parallel"
+        + " max_millis max_iterations max_heap max_pts";
+    static final String DEFAULT_OPTIONS =
+        "enabled:true delta:false sparse:false summaries:false metrics:false rewrite:false liveness:true gc:true parallel:false"
+        + " max_millis:0 max_iterations:0 max_heap:0 max_pts:0";
+
+    final Summaries summaries = new Summaries();
+    // per-method profile, recorded when the metrics option is set
+    final Metrics metrics = new Metrics();
+    // results of unchanged bodies from earlier runs; null when caching is off
+    ResultCache cache;
+    // loads replaced by the rewrite option
+    final AtomicInteger rewritten = new AtomicInteger();
+    // time spent in this phase, summed over Soot's threads
+    final AtomicLong nanos = new AtomicLong();
+
+    // forgets everything tied to the current Scene; metrics are kept
+    void reset() {
+        results.clear();
+        summaries.clear();
+    }
 
-            for (String l : lines)
-                System.out.println(l);
-        }
+    // filled concurrently when Soot runs the body packs on several threads;
+    // one per transformer so that server requests do not see each other's results
+    Results results = new Results(System.out, false, false);
+    public void printResults() {
+        results.flush();
     }
-    class AbsObj {
-        Unit allocSite;
+    static class AbsObj {
+        final Unit allocSite;
+        final int id;
 
-        AbsObj(Unit u) {
+        AbsObj(Unit u, int id) {
             allocSite = u;
+            this.id = id;
         }
 
         @Override
         public int hashCode() {
-            return allocSite.hashCode();
+            return id;
         }
 
         @Override
         public boolean equals(Object o) {
-            return (o instanceof AbsObj) && ((AbsObj) o).allocSite == allocSite;
+            return (o instanceof AbsObj) && ((AbsObj) o).id == id;
         }
 
         @Override
@@ -51,54 +72,221 @@ public class AnalysisTransformer extends BodyTransformer {
             return "Obj-" + allocSite.getJavaSourceStartLineNumber();
         }
     }
-    final AbsObj TOP = new AbsObj(null);
 
-    class State {
-        Map<Local, Set<AbsObj>> stack;
-        Map<AbsObj, Map<SootField, Set<AbsObj>>> heap;
+    // Dense numbering of the abstract objects of one method: TOP is 0, then every
+    // unit that creates an object (allocation, call, constant field store) in chain order.
+    // It also holds the transfer function of every unit, which carries the callee
+    // summary of a call site when summaries are enabled. All states of one body share it.
+    static class Sites {
+        final AbsObj TOP;
+        final Map<Unit, AbsObj> byUnit = new HashMap<>();
+        final List<AbsObj> byId = new ArrayList<>();
+        // replacement candidates for redundant loads, in declaration order
+        final List<Local> namedLocals = new ArrayList<>();
+        // holders index per stack map; states that share a stack map share its index
+        final Map<PMap<Local, PtsSet>, Map<PtsSet, List<Local>>> holders = new IdentityHashMap<>();
+        // temporaries to drop from the stack after each unit, see deadTemporaries
+        Map<Unit, List<Local>> dead = Collections.emptyMap();
+        // temporaries live after each unit, the only ones collect takes as roots
+        Map<Unit, Set<Local>> liveTemporaries = Collections.emptyMap();
+        // units whose OUT may hold unreachable objects, see garbageAt
+        Set<Unit> collectAt = Collections.emptySet();
+        Budget budget = Budget.NONE;
+        // the transfer function of every unit, see compile
+        final Map<Unit, Transfer> code = new HashMap<>();
+        // counters for Metrics, atomic because the parallel solver shares them
+        final AtomicInteger states = new AtomicInteger();
+        final AtomicInteger transfers = new AtomicInteger();
+        final AtomicInteger collected = new AtomicInteger();
+        // largest states the solver computed, recorded by peaks when measure is set
+        boolean measure;
+        final AtomicInteger maxPts = new AtomicInteger();
+        final AtomicInteger maxStack = new AtomicInteger();
+        final AtomicInteger maxHeap = new AtomicInteger();
+
+        Sites(Body body) {
+            this(body, null);
+        }
 
-        Map<SootField, Set<AbsObj>> statics;
+        Sites(Body body, Summaries summaries) {
+            TOP = new AbsObj(null, 0);
+            byId.add(TOP);
+            for (Local l : body.getLocals()) {
+                if (!l.getName().startsWith("$")) namedLocals.add(l);
+            }
+            // compile numbers the objects it needs, so chain order gives them their ids
+            for (Unit u : body.getUnits()) code.put(u, compile(u, this, summaries));
+        }
+
+        Transfer transfer(Unit u) {
+            return code.get(u);
+        }
 
+        AbsObj get(Unit u) {
+            AbsObj obj = byUnit.get(u);
+            if (obj == null) {
+                obj = new AbsObj(u, byId.size());
+                byId.add(obj);
+                byUnit.put(u, obj);
+            }
+            return obj;
+        }
 
-        State() {
-            stack = new HashMap<>();
-            heap  = new HashMap<>();
-            statics = new HashMap<>();
+        AbsObj obj(int id) {
+            return byId.get(id);
         }
-        State deepCopy() {
-            State copy = new State();
 
-            // Copy Stack
-            if(stack != null) {
+        int size() {
+            return byId.size();
+        }
 
-                for (Map.Entry<Local, Set<AbsObj>> e : stack.entrySet()) {
-                    Set<AbsObj> newSet = new HashSet<>(e.getValue());
-                    copy.stack.put(e.getKey(), newSet);
-                }
+        // states shrink as well as grow on the way to the fixpoint, so every computed one is measured
+        void peaks(State s) {
+            if (!measure) return;
+            int pts = 0;
+            for (Map.Entry<Local, PtsSet> e : s.stack) pts = Math.max(pts, e.getValue().size());
+            for (Map.Entry<SootField, PtsSet> e : s.statics) pts = Math.max(pts, e.getValue().size());
+            for (Map.Entry<AbsObj, PMap<SootField, PtsSet>> o : s.heap) {
+                for (Map.Entry<SootField, PtsSet> e : o.getValue()) pts = Math.max(pts, e.getValue().size());
             }
+            maxPts.accumulateAndGet(pts, Math::max);
+            maxStack.accumulateAndGet(s.stack.size(), Math::max);
+            maxHeap.accumulateAndGet(s.heap.size(), Math::max);
+        }
+    }
 
-            // Copy Heap
-            if(heap != null) {
+    /*
+     * Per-method limits of the fixpoint, 0 meaning none: wall-clock time,
+     * worklist iterations, abstract objects in a heap and objects in any
+     * points-to set of a local, a static or a field of a heap object. A
+     * solver that exceeds one throws OverBudget and the method is
+     * skipped. Its states are not a fixpoint yet, and the only
+     * conservative answer for a redundant load is "not redundant", so
+     * nothing is reported for it except the skip.
+     */
+    static final class Budget {
+        static final Budget NONE = new Budget(0, 0, 0, 0);
+
+        final long deadline;
+        final int iterations;
+        final int heap;
+        final int pts;
+        private final AtomicInteger used = new AtomicInteger();
+
+        Budget(long millis, int iterations, int heap, int pts) {
+            this.deadline = millis > 0 ? System.nanoTime() + millis * 1000000 : 0;
+            this.iterations = iterations;
+            this.heap = heap;
+            this.pts = pts;
+        }
 
-                for (Map.Entry<AbsObj, Map<SootField, Set<AbsObj>>> objEntry : heap.entrySet()) {
-                    
-                    Map<SootField, Set<AbsObj>> newFieldMap = new HashMap<>();
-                    
-                    for (Map.Entry<SootField, Set<AbsObj>> fieldEntry : objEntry.getValue().entrySet()) {
-                        Set<AbsObj> newSet = new HashSet<>(fieldEntry.getValue());
-                        newFieldMap.put(fieldEntry.getKey(), newSet);
-                    }
-                    
-                    copy.heap.put(objEntry.getKey(), newFieldMap);
-                }
+        // one worklist pop
+        void tick() {
+            if (iterations > 0 && used.incrementAndGet() > iterations)
+                throw new OverBudget("more than " + iterations + " iterations");
+            if (deadline != 0 && System.nanoTime() > deadline)
+                throw new OverBudget("time limit exceeded");
+        }
+
+        // a freshly computed OUT state
+        void check(State s) {
+            if (heap > 0 && s.heap.size() > heap)
+                throw new OverBudget("more than " + heap + " objects in a heap");
+            if (pts <= 0) return;
+            for (Map.Entry<Local, PtsSet> e : s.stack) {
+                if (e.getValue().size() > pts)
+                    throw new OverBudget("more than " + pts + " objects in the points-to set of " + e.getKey());
             }
-            for (Map.Entry<SootField, Set<AbsObj>> e : statics.entrySet()) {
-                copy.statics.put(e.getKey(), new HashSet<>(e.getValue()));
+            for (Map.Entry<SootField, PtsSet> e : s.statics) {
+                if (e.getValue().size() > pts)
+                    throw new OverBudget("more than " + pts + " objects in the points-to set of " + e.getKey());
             }
+            for (Map.Entry<AbsObj, PMap<SootField, PtsSet>> o : s.heap) {
+                for (Map.Entry<SootField, PtsSet> e : o.getValue()) {
+                    if (e.getValue().size() > pts)
+                        throw new OverBudget("more than " + pts + " objects in the points-to set of "
+                            + o.getKey() + "." + e.getKey().getName());
+                }
+            }
+        }
+    }
+
+    static final class OverBudget extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        OverBudget(String reason) {
+            super(reason, null, false, false);
+        }
+    }
 
+    // States are persistent: the maps and the points-to sets stored in them are
+    // never modified in place, an update replaces the entry with a new set.
+    class State {
+        final Sites sites;
+        PMap<Local, PtsSet> stack;
+        PMap<AbsObj, PMap<SootField, PtsSet>> heap;
+
+        PMap<SootField, PtsSet> statics;
+
+
+        State(Sites sites) {
+            this.sites = sites;
+            sites.states.incrementAndGet();
+            stack = PMap.empty();
+            heap  = PMap.empty();
+            statics = PMap.empty();
+        }
+        State copy() {
+            State copy = new State(sites);
+            copy.stack = stack;
+            copy.heap = heap;
+            copy.statics = statics;
             return copy;
         }
 
+        // Zobrist-style fingerprint over the (local, pts), (object, field, pts) and (static, pts)
+        // facts; the maps keep theirs up to date, so this is O(1)
+        long fingerprint() {
+            return stack.fingerprint * 31 * 31 + heap.fingerprint * 31 + statics.fingerprint;
+        }
+
+        PtsSet field(AbsObj obj, SootField f) {
+            PMap<SootField, PtsSet> fieldMap = heap.get(obj);
+            return fieldMap == null ? null : fieldMap.get(f);
+        }
+
+        void putField(AbsObj obj, SootField f, PtsSet pts) {
+            PMap<SootField, PtsSet> fieldMap = heap.getOrDefault(obj, PMap.empty());
+            heap = heap.put(obj, fieldMap.put(f, pts));
+        }
+
+        // inverted stack: non-temporary locals by the points-to set they hold
+        Map<PtsSet, List<Local>> holders() {
+            Map<PtsSet, List<Local>> index = sites.holders.get(stack);
+            if (index == null) {
+                index = new HashMap<>();
+                for (Local v : sites.namedLocals) {
+                    PtsSet pts = stack.get(v);
+                    if (pts != null && !pts.isEmpty())
+                        index.computeIfAbsent(pts, k -> new ArrayList<>(1)).add(v);
+                }
+                sites.holders.put(stack, index);
+            }
+            return index;
+        }
+
+        void appendPts(StringBuilder sb, PtsSet pts) {
+            if (pts.isEmpty()) {
+                sb.append("{}\n");
+                return;
+            }
+            sb.append("{ ");
+            for (int id = pts.nextSetBit(0); id >= 0; id = pts.nextSetBit(id + 1)) {
+                sb.append(sites.obj(id)).append(" ");
+            }
+            sb.append("}\n");
+        }
+
             @Override
         public String toString() {
             StringBuilder sb = new StringBuilder();
@@ -107,19 +295,9 @@ public class AnalysisTransformer extends BodyTransformer {
             if (stack.isEmpty()) {
                 sb.append("  <empty>\n");
             } else {
-                for (Local l : stack.keySet()) {
-                    sb.append("  ").append(l.getName()).append(" -> ");
-
-                    Set<AbsObj> pts = stack.get(l);
-                    if (pts == null || pts.isEmpty()) {
-                        sb.append("{}\n");
-                    } else {
-                        sb.append("{ ");
-                        for (AbsObj o : pts) {
-                            sb.append(o).append(" ");
-                        }
-                        sb.append("}\n");
-                    }
+                for (Map.Entry<Local, PtsSet> e : stack) {
+                    sb.append("  ").append(e.getKey().getName()).append(" -> ");
+                    appendPts(sb, e.getValue());
                 }
             }
 
@@ -127,25 +305,12 @@ public class AnalysisTransformer extends BodyTransformer {
             if (heap.isEmpty()) {
                 sb.append("  <empty>\n");
             } else {
-                for (AbsObj obj : heap.keySet()) {
-                    sb.append("  ").append(obj).append(" -> {\n");
-
-                    Map<SootField, Set<AbsObj>> fieldMap = heap.get(obj);
-                    if (fieldMap != null) {
-                        for (SootField f : fieldMap.keySet()) {
-                            sb.append("      ").append(f.getName()).append(" -> ");
-
-                            Set<AbsObj> pts = fieldMap.get(f);
-                            if (pts == null || pts.isEmpty()) {
-                                sb.append("{}\n");
-                            } else {
-                                sb.append("{ ");
-                                for (AbsObj o : pts) {
-                                    sb.append(o).append(" ");
-                                }
-                                sb.append("}\n");
-                            }
-                        }
+                for (Map.Entry<AbsObj, PMap<SootField, PtsSet>> objEntry : heap) {
+                    sb.append("  ").append(objEntry.getKey()).append(" -> {\n");
+
+                    for (Map.Entry<SootField, PtsSet> e : objEntry.getValue()) {
+                        sb.append("      ").append(e.getKey().getName()).append(" -> ");
+                        appendPts(sb, e.getValue());
                     }
                     sb.append("  }\n");
                 }
@@ -156,19 +321,9 @@ public class AnalysisTransformer extends BodyTransformer {
                     sb.append("  <empty>\n");
 
                 }else {
-                    for (SootField l : statics.keySet()) {
-                    sb.append("  ").append(l.getName()).append(" -> ");
-
-                    Set<AbsObj> pts = statics.get(l);
-                    if (pts == null || pts.isEmpty()) {
-                        sb.append("{}\n");
-                    } else {
-                        sb.append("{ ");
-                        for (AbsObj o : pts) {
-                            sb.append(o).append(" ");
-                        }
-                        sb.append("}\n");
-                    }
+                    for (Map.Entry<SootField, PtsSet> e : statics) {
+                    sb.append("  ").append(e.getKey().getName()).append(" -> ");
+                    appendPts(sb, e.getValue());
                 }
                 }
             
@@ -177,195 +332,481 @@ public class AnalysisTransformer extends BodyTransformer {
         }
     }
 
-    boolean joinIn(State target, State pre) {
-        boolean changed = false;
-
-        for (Local l : pre.stack.keySet()) {
-            Set<AbsObj> inSet = pre.stack.get(l);
-            Set<AbsObj> targetSet = target.stack.computeIfAbsent(l, k -> new HashSet<>());
-
-            if (targetSet.addAll(inSet)) {
-                changed = true;
+    // joins pre into target; facts that were not in target yet are passed to added (if not null)
+    <K> PMap<K, PtsSet> joinSets(PMap<K, PtsSet> target, PMap<K, PtsSet> pre, boolean[] changed,
+                                 BiConsumer<K, PtsSet> added) {
+        if (target == pre || pre.isEmpty()) return target;
+        if (target.isEmpty()) {
+            changed[0] = true;
+            if (added != null) {
+                for (Map.Entry<K, PtsSet> e : pre) added.accept(e.getKey(), e.getValue());
             }
+            return pre;
         }
+        for (Map.Entry<K, PtsSet> e : pre) {
+            PtsSet targetSet = target.get(e.getKey());
+            PtsSet joined = targetSet == null ? e.getValue() : targetSet.union(e.getValue());
+            if (joined != targetSet) {
+                target = target.put(e.getKey(), joined);
+                changed[0] = true;
+                if (added != null)
+                    added.accept(e.getKey(), targetSet == null ? joined : joined.minus(targetSet));
+            }
+        }
+        return target;
+    }
 
-        for (AbsObj obj : pre.heap.keySet()) {
-            Map<SootField, Set<AbsObj>> inMap = pre.heap.get(obj);
-            Map<SootField, Set<AbsObj>> targetMap = target.heap.computeIfAbsent(obj, k -> new HashMap<>());
-
-            for (SootField f : inMap.keySet()) {
-                Set<AbsObj> inSet = inMap.get(f);
-                Set<AbsObj> targetSet = targetMap.computeIfAbsent(f, k -> new HashSet<>());
+    boolean joinIn(State target, State pre) {
+        return joinIn(target, pre, null);
+    }
 
-                if (targetSet.addAll(inSet)) {
-                    changed = true;
+    // same as joinIn(target, pre), additionally recording into diff every fact it added to target
+    boolean joinIn(State target, State pre, State diff) {
+        boolean[] changed = new boolean[1];
+
+        target.stack = joinSets(target.stack, pre.stack, changed,
+            diff == null ? null : (l, pts) -> diff.stack = diff.stack.put(l, pts));
+
+        if (target.heap != pre.heap) {
+            for (Map.Entry<AbsObj, PMap<SootField, PtsSet>> objEntry : pre.heap) {
+                AbsObj obj = objEntry.getKey();
+                PMap<SootField, PtsSet> targetMap = target.heap.get(obj);
+                if (targetMap == null) {
+                    target.heap = target.heap.put(obj, objEntry.getValue());
+                    if (diff != null) diff.heap = diff.heap.put(obj, objEntry.getValue());
+                    changed[0] = true;
+                    continue;
                 }
+                PMap<SootField, PtsSet> joined = joinSets(targetMap, objEntry.getValue(), changed,
+                    diff == null ? null : (f, pts) -> diff.putField(obj, f, pts));
+                target.heap = target.heap.put(obj, joined);
             }
-
         }
 
-        for (SootField f : pre.statics.keySet()) {
-            Set<AbsObj> inSet = pre.statics.get(f);
-            Set<AbsObj> targetSet = target.statics.computeIfAbsent(f, k -> new HashSet<>());
-            if (targetSet.addAll(inSet)) changed = true;
-        }
-        return changed;
+        target.statics = joinSets(target.statics, pre.statics, changed,
+            diff == null ? null : (f, pts) -> diff.statics = diff.statics.put(f, pts));
+        return changed[0];
     }
 
+    // unequal fingerprints reject in O(1), the maps are only compared when they match
     boolean stateEquals(State a, State b) {
-        return a.stack.equals(b.stack) && a.heap.equals(b.heap);
+        if (a.fingerprint() != b.fingerprint()) return false;
+        return a.stack.equals(b.stack) && a.heap.equals(b.heap) && a.statics.equals(b.statics);
     }
 
-    AbsObj getAbsObj(Unit u) {
-        return new AbsObj(u);
+    State dataFlow(Unit u, State in) {
+        in.sites.transfers.incrementAndGet();
+        return in.sites.transfer(u).apply(in);
     }
 
-    State dataFlow(Unit u, State in) {
-        State out = in.deepCopy();
-        if (u instanceof InvokeStmt ||
-        (u instanceof AssignStmt && ((AssignStmt) u).getRightOp() instanceof InvokeExpr)) {
+    /*
+     * Transfer function of one unit. A unit's shape never changes during the
+     * fixpoint, so the instanceof tests on its operands, the operands
+     * themselves, and the abstract object or callee summary it uses are all
+     * resolved once, by compile. apply returns a new OUT state and leaves in
+     * unchanged.
+     */
+    abstract static class Transfer {
+        abstract State apply(State in);
+    }
 
-             InvokeExpr ie = (u instanceof InvokeStmt)
-                ? ((InvokeStmt)u).getInvokeExpr()
-                : ((AssignStmt)u).getInvokeExpr();
+    // the cases below, in the order they are tested; everything else is the identity.
+    // summaries is null when they are disabled
+    static Transfer compile(Unit u, Sites sites, Summaries summaries) {
+        if (u instanceof InvokeStmt || (u instanceof AssignStmt && ((AssignStmt) u).getRightOp() instanceof InvokeExpr)) {
+            InvokeExpr ie = ((Stmt) u).getInvokeExpr();
+            if (ie.getMethod().getName().equals("<init>")) {
+                // without summaries constructors are ignored; with them a constructor writes what its
+                // summary says, except Object's, which every constructor calls and which writes nothing
+                if (summaries == null || ie.getMethod().getSignature().equals(Summaries.OBJECT_INIT))
+                    return new Identity();
+                Summaries.Summary s = summaries.of(ie);
+                if (s.empty()) return new Identity();
+                return new Call(PtsSet.of(sites.get(u).id), s, ie, null);
+            }
+            Local result = u instanceof AssignStmt ? (Local) ((AssignStmt) u).getLeftOp() : null;
+            return new Call(PtsSet.of(sites.get(u).id), summaries == null ? null : summaries.of(ie), ie, result);
+        }
+        if (!(u instanceof AssignStmt)) return new Identity();
+
+        Value lhs = ((AssignStmt) u).getLeftOp();
+        Value rhs = ((AssignStmt) u).getRightOp();
+        if (lhs instanceof Local && rhs instanceof NewExpr)
+            return new New((Local) lhs, sites.get(u));
+        if (lhs instanceof Local && rhs instanceof Local)
+            return new Copy((Local) lhs, (Local) rhs);
+        if (lhs instanceof Local && rhs instanceof InstanceFieldRef) {
+            InstanceFieldRef fr = (InstanceFieldRef) rhs;
+            return new Load((Local) lhs, (Local) fr.getBase(), fr.getField());
+        }
+        if (lhs instanceof InstanceFieldRef && rhs instanceof Local) {
+            InstanceFieldRef fr = (InstanceFieldRef) lhs;
+            return new Store((Local) fr.getBase(), fr.getField(), (Local) rhs);
+        }
+        if (lhs instanceof InstanceFieldRef && rhs instanceof Constant) {
+            InstanceFieldRef fr = (InstanceFieldRef) lhs;
+            return new StoreConstant((Local) fr.getBase(), fr.getField(), PtsSet.of(sites.get(u).id));
+        }
+        if (lhs instanceof StaticFieldRef && rhs instanceof Local)
+            return new StaticStore(((StaticFieldRef) lhs).getField(), (Local) rhs);
+        if (lhs instanceof Local && rhs instanceof StaticFieldRef)
+            return new StaticLoad((Local) lhs, ((StaticFieldRef) rhs).getField());
+        return new Identity();
+    }
 
-            SootMethod m = ie.getMethod();
+    static final class Identity extends Transfer {
+        @Override
+        State apply(State in) {
+            return in.copy();
+        }
+    }
 
-            // Ignore constructors
-            if (m.getName().equals("<init>"))
-                return out;
-            
-            for (Map<SootField, Set<AbsObj>> fmap : out.heap.values()) {
-                for (Map.Entry<SootField, Set<AbsObj>> e : fmap.entrySet()) {
+    // a call: the fields it may write (every field without a summary) get a new version,
+    // and with a summary the result points to the arguments it may return or the new version
+    static final class Call extends Transfer {
+        final PtsSet fresh;
+        final Summaries.Summary summary;   // null when summaries are disabled
+        final Local result;                // null for an invoke statement
+        // the arguments the callee may return, and whether it may return anything else
+        final List<Local> returned = new ArrayList<>(1);
+        final boolean other;
+
+        Call(PtsSet fresh, Summaries.Summary summary, InvokeExpr ie, Local result) {
+            this.fresh = fresh;
+            this.summary = summary;
+            this.result = result;
+            boolean other = summary == null || summary.other;
+            if (summary != null) {
+                for (int i : summary.returns) {
+                    Value arg = i < 0 ? ((InstanceInvokeExpr) ie).getBase() : ie.getArg(i);
+                    if (arg instanceof Local) returned.add((Local) arg);
+                    else if (!(arg instanceof NullConstant)) other = true;
+                }
+            }
+            this.other = other;
+        }
 
-                    Set<AbsObj> fresh = new HashSet<>();
-                    fresh.add(new AbsObj(u));   // new version after call
-                    e.setValue(fresh);
+        @Override
+        State apply(State in) {
+            State out = in.copy();
+            if (summary == null || summary.unknown()) {
+                for (Map.Entry<AbsObj, PMap<SootField, PtsSet>> objEntry : out.heap) {
+                    PMap<SootField, PtsSet> fmap = objEntry.getValue();
+                    for (Map.Entry<SootField, PtsSet> e : objEntry.getValue()) {
+                        fmap = fmap.put(e.getKey(), fresh);
+                    }
+                    out.heap = out.heap.put(objEntry.getKey(), fmap);
+                }
+                if (summary != null) {
+                    for (Map.Entry<SootField, PtsSet> e : out.statics)
+                        out.statics = out.statics.put(e.getKey(), fresh);
+                }
+            } else {
+                // only the fields the callee may write get a new version
+                for (SootField f : summary.fields) {
+                    for (Map.Entry<AbsObj, PMap<SootField, PtsSet>> objEntry : out.heap) {
+                        if (objEntry.getValue().containsKey(f))
+                            out.putField(objEntry.getKey(), f, fresh);
+                    }
                 }
+                for (SootField f : summary.statics) {
+                    if (out.statics.containsKey(f))
+                        out.statics = out.statics.put(f, fresh);
+                }
+            }
+            if (summary != null && result != null) {
+                PtsSet pts = other ? fresh : PtsSet.EMPTY;
+                for (Local arg : returned) pts = pts.union(in.stack.getOrDefault(arg, PtsSet.EMPTY));
+                out.stack = out.stack.put(result, pts);
             }
             return out;
         }
-        if(u instanceof AssignStmt) {
-            AssignStmt as = (AssignStmt) u;
-            Value lhs = as.getLeftOp();
-            Value rhs = as.getRightOp();
+    }
 
-            //x = new node;
-            if(lhs instanceof Local && rhs instanceof NewExpr) {
-                Local x = (Local) lhs;
-                NewExpr y = (NewExpr) rhs;
+    // x = new C
+    static final class New extends Transfer {
+        final Local x;
+        final AbsObj obj;
+        final PtsSet pts;
 
-                AbsObj obj = getAbsObj(u);
+        New(Local x, AbsObj obj) {
+            this.x = x;
+            this.obj = obj;
+            this.pts = PtsSet.of(obj.id);
+        }
 
-                Set<AbsObj> st = new HashSet<>();
-                st.add(obj);
-                out.stack.put(x, st);
+        @Override
+        State apply(State in) {
+            State out = in.copy();
+            out.stack = out.stack.put(x, pts);
+            if (!out.heap.containsKey(obj))
+                out.heap = out.heap.put(obj, PMap.empty());
+            return out;
+        }
+    }
 
-                out.heap.computeIfAbsent(obj, k -> new HashMap<>());
-            }
+    // x = y
+    static final class Copy extends Transfer {
+        final Local x;
+        final Local y;
 
-            //x=y;
-            else if(lhs instanceof Local && rhs instanceof Local ) {
-                Local x = (Local) lhs;
-                Local y = (Local) rhs;
+        Copy(Local x, Local y) {
+            this.x = x;
+            this.y = y;
+        }
 
-                Set<AbsObj> st = in.stack.getOrDefault(y, new HashSet<>());
-                out.stack.put(x, new HashSet<>(st));
-            }
+        @Override
+        State apply(State in) {
+            State out = in.copy();
+            out.stack = out.stack.put(x, in.stack.getOrDefault(y, PtsSet.EMPTY));
+            return out;
+        }
+    }
 
-            //x = y.f
-            else if(lhs instanceof Local && rhs instanceof InstanceFieldRef) {
-                Local x = (Local) lhs;
-                InstanceFieldRef fieldRef = (InstanceFieldRef) rhs;
+    // x = base.f
+    static final class Load extends Transfer {
+        final Local x;
+        final Local base;
+        final SootField field;
 
-                Local base = (Local) fieldRef.getBase();
-                SootField field = fieldRef.getField();
+        Load(Local x, Local base, SootField field) {
+            this.x = x;
+            this.base = base;
+            this.field = field;
+        }
 
-                Set<AbsObj> result = new HashSet<>();
+        @Override
+        State apply(State in) {
+            State out = in.copy();
+            out.stack = out.stack.put(x, load(in, base, field));
+            return out;
+        }
+    }
 
-                Set<AbsObj> base_st = in.stack.getOrDefault(base, new HashSet<>());
+    // base.f = y, a strong update when base points to a single object
+    static final class Store extends Transfer {
+        final Local base;
+        final SootField field;
+        final Local y;
 
-                for(AbsObj obj : base_st) {
-                    Map<SootField, Set<AbsObj>> fieldMap = in.heap.get(obj);
-                    if(fieldMap == null) continue;
-                    
-                    Set<AbsObj> field_st = fieldMap.get(field);
-                    if(field_st != null) {
-                        result.addAll(field_st);
-                    }
-                }
-                out.stack.put(x, result);
-                
+        Store(Local base, SootField field, Local y) {
+            this.base = base;
+            this.field = field;
+            this.y = y;
+        }
+
+        @Override
+        State apply(State in) {
+            State out = in.copy();
+            PtsSet base_st = in.stack.getOrDefault(base, PtsSet.EMPTY);
+            PtsSet y_st = in.stack.getOrDefault(y, PtsSet.EMPTY);
+            boolean strong = base_st.size() == 1;
+
+            for (int id = base_st.nextSetBit(0); id >= 0; id = base_st.nextSetBit(id + 1)) {
+                AbsObj obj = in.sites.obj(id);
+                PtsSet fieldSet = out.field(obj, field);
+
+                if (strong || fieldSet == null)
+                    out.putField(obj, field, y_st);
+                else
+                    out.putField(obj, field, fieldSet.union(y_st));
             }
-            //x.f = y
-            else if(lhs instanceof InstanceFieldRef && rhs instanceof Local) {
-                InstanceFieldRef fr = (InstanceFieldRef) lhs;
-                Local y = (Local) rhs;
+            return out;
+        }
+    }
 
-                Local base = (Local) fr.getBase();
-                SootField field = fr.getField();
+    // base.f = constant
+    static final class StoreConstant extends Transfer {
+        final Local base;
+        final SootField field;
+        final PtsSet value;
 
-                Set<AbsObj> base_st = in.stack.getOrDefault(base, new HashSet<>());
-                Set<AbsObj> y_st = in.stack.getOrDefault(y, new HashSet<>());
+        StoreConstant(Local base, SootField field, PtsSet value) {
+            this.base = base;
+            this.field = field;
+            this.value = value;
+        }
 
-                for(AbsObj obj : base_st) {
-                    Map<SootField, Set<AbsObj>> fieldMap = out.heap.computeIfAbsent(obj, k -> new HashMap<>());
+        @Override
+        State apply(State in) {
+            State out = in.copy();
+            PtsSet base_st = in.stack.getOrDefault(base, PtsSet.EMPTY);
+            for (int id = base_st.nextSetBit(0); id >= 0; id = base_st.nextSetBit(id + 1)) {
+                out.putField(in.sites.obj(id), field, value);
+            }
+            return out;
+        }
+    }
 
-                    Set<AbsObj> fieldSet = fieldMap.computeIfAbsent(field, k -> new HashSet<>());
+    // global = y
+    static final class StaticStore extends Transfer {
+        final SootField field;
+        final Local y;
 
-                    if(base_st.size() == 1) {
-                        fieldSet.clear();
-                        fieldSet.addAll(y_st);
-                    }
-                    else
-                        fieldSet.addAll(y_st);
-                }
-                
+        StaticStore(SootField field, Local y) {
+            this.field = field;
+            this.y = y;
+        }
 
-            }
-            // x.f = const
-            else if (lhs instanceof InstanceFieldRef && rhs instanceof Constant) {
+        @Override
+        State apply(State in) {
+            State out = in.copy();
+            out.statics = out.statics.put(field, in.stack.getOrDefault(y, PtsSet.EMPTY));
+            return out;
+        }
+    }
 
-                InstanceFieldRef fr = (InstanceFieldRef) lhs;
-                Local base = (Local) fr.getBase();
-                SootField field = fr.getField();
+    // x = global
+    static final class StaticLoad extends Transfer {
+        final Local x;
+        final SootField field;
 
-                Set<AbsObj> base_st = in.stack.getOrDefault(base, Collections.emptySet());
+        StaticLoad(Local x, SootField field) {
+            this.x = x;
+            this.field = field;
+        }
 
-                for (AbsObj obj : base_st) {
-                    Map<SootField, Set<AbsObj>> fmap =
-                            out.heap.computeIfAbsent(obj, k -> new HashMap<>());
+        @Override
+        State apply(State in) {
+            State out = in.copy();
+            out.stack = out.stack.put(x, in.statics.getOrDefault(field, PtsSet.EMPTY));
+            return out;
+        }
+    }
 
-                    
-                    Set<AbsObj> primVal = new HashSet<>();
-                    primVal.add(new AbsObj(u)); 
+    /*
+     * $-temporaries that are dead after each unit: not live after it, but live
+     * before it, defined by it, or live after one of its predecessors (dead on
+     * this branch only). Named locals are never dropped because replacement
+     * offers them as replacements wherever they hold a value. Dropping changes
+     * no result, collect ignores dead temporaries either way.
+     */
+    static Map<Unit, List<Local>> deadTemporaries(DirectedGraph<Unit> cfg, LiveLocals live) {
+        Map<Unit, List<Local>> dead = new HashMap<>();
+        for (Unit u : cfg) {
+            Set<Local> gone = new LinkedHashSet<>(live.getLiveLocalsBefore(u));
+            for (ValueBox b : u.getDefBoxes()) {
+                if (b.getValue() instanceof Local) gone.add((Local) b.getValue());
+            }
+            for (Unit p : cfg.getPredsOf(u)) gone.addAll(live.getLiveLocalsAfter(p));
+            gone.removeAll(live.getLiveLocalsAfter(u));
 
-                    fmap.put(field, primVal);
-                }
+            List<Local> kill = new ArrayList<>();
+            for (Local l : gone) {
+                if (l.getName().startsWith("$")) kill.add(l);
+            }
+            if (!kill.isEmpty()) dead.put(u, kill);
+        }
+        return dead;
+    }
 
-                
+    static Map<Unit, Set<Local>> liveTemporaries(UnitGraph cfg, LiveLocals live) {
+        Map<Unit, Set<Local>> temporaries = new HashMap<>();
+        for (Unit u : cfg) {
+            Set<Local> after = new HashSet<>();
+            for (Local l : live.getLiveLocalsAfter(u)) {
+                if (l.getName().startsWith("$")) after.add(l);
             }
-            // global = x
-            else if (lhs instanceof StaticFieldRef && rhs instanceof Local) {
-                StaticFieldRef sfr = (StaticFieldRef) lhs;
-                SootField f = sfr.getField();
-                Set<AbsObj> val = in.stack.getOrDefault((Local) rhs, new HashSet<>());
-                out.statics.put(f, new HashSet<>(val));
+            if (!after.isEmpty()) temporaries.put(u, after);
+        }
+        return temporaries;
+    }
+
+    /*
+     * The units after which collect has something to do. The OUT of every
+     * other unit is its IN, a join of collected states whose roots it still
+     * has: its transfer is the identity and every temporary live after a
+     * predecessor is live after it too.
+     */
+    static Set<Unit> garbageAt(DirectedGraph<Unit> graph, Sites sites, Map<Unit, Set<Local>> live) {
+        Set<Unit> at = new HashSet<>();
+        for (Unit u : graph) {
+            if (!(sites.transfer(u) instanceof Identity)) {
+                at.add(u);
+                continue;
             }
-            // x = global
-            else if (lhs instanceof Local && rhs instanceof StaticFieldRef) {
-                Local x = (Local) lhs;
-                StaticFieldRef sfr = (StaticFieldRef) rhs;
-                SootField f = sfr.getField();
-                Set<AbsObj> val = in.statics.getOrDefault(f, new HashSet<>());
-                out.stack.put(x, new HashSet<>(val));
+            Set<Local> after = live.getOrDefault(u, Collections.emptySet());
+            for (Unit p : graph.getPredsOf(u)) {
+                if (!after.containsAll(live.getOrDefault(p, Collections.emptySet()))) at.add(u);
             }
+        }
+        return at;
+    }
+
+    void killDead(Unit u, State out) {
+        List<Local> kill = out.sites.dead.get(u);
+        if (kill == null) return;
+        for (Local l : kill) out.stack = out.stack.remove(l);
+    }
 
+    /*
+     * Abstract GC: drops the heap entries of objects that no named local, live
+     * temporary or static reaches through fields. Such an object can never be
+     * loaded from or passed to a callee again, and reallocating its site starts
+     * from an empty entry. Every OUT is collected (garbageAt only skips those
+     * that cannot hold garbage), so results depend on gc but not on liveness,
+     * which decides the roots whether or not dead temporaries are dropped.
+     */
+    void collect(Unit u, State out) {
+        Sites sites = out.sites;
+        if (!sites.collectAt.contains(u) || out.heap.isEmpty()) return;
+
+        Set<Local> temporaries = sites.liveTemporaries.getOrDefault(u, Collections.emptySet());
+        long[] reached = new long[(sites.size() + 63) >>> 6];
+        for (Map.Entry<SootField, PtsSet> e : out.statics) or(reached, e.getValue());
+        for (Map.Entry<Local, PtsSet> e : out.stack) {
+            if (!e.getKey().getName().startsWith("$") || temporaries.contains(e.getKey())) or(reached, e.getValue());
         }
-        return out;
+        // objects reached through fields; heaps are small, so they are rescanned until nothing new is reached
+        BitSet kept = new BitSet(sites.size());
+        int marked = 0;
+        for (boolean grew = true; grew && marked < out.heap.size(); ) {
+            grew = false;
+            for (Map.Entry<AbsObj, PMap<SootField, PtsSet>> o : out.heap) {
+                int id = o.getKey().id;
+                if ((reached[id >>> 6] & (1L << id)) == 0 || kept.get(id)) continue;
+                kept.set(id);
+                marked++;
+                grew = true;
+                for (Map.Entry<SootField, PtsSet> e : o.getValue()) or(reached, e.getValue());
+            }
+        }
+
+        if (marked == out.heap.size()) return;
+        for (AbsObj obj : out.heap.keys()) {
+            if (!kept.get(obj.id)) {
+                out.heap = out.heap.remove(obj);
+                sites.collected.incrementAndGet();
+            }
+        }
+    }
+
+    private static void or(long[] bits, PtsSet pts) {
+        for (int i = 0; i < pts.words.length; i++) bits[i] |= pts.words[i];
     }
 
-    String redundantCheck(Unit u, State in, Body body) {
+    // points-to set of base.f in the given state
+    static PtsSet load(State in, Local base, SootField field) {
+        PtsSet base_st = in.stack.getOrDefault(base, PtsSet.EMPTY);
+
+        // common case: a single base object, share its field set
+        if (base_st.size() == 1) {
+            PtsSet field_st = in.field(in.sites.obj(base_st.nextSetBit(0)), field);
+            return field_st == null ? PtsSet.EMPTY : field_st;
+        }
+
+        PtsSet.Builder result = new PtsSet.Builder();
+        for (int id = base_st.nextSetBit(0); id >= 0; id = base_st.nextSetBit(id + 1)) {
+            PtsSet field_st = in.field(in.sites.obj(id), field);
+            if(field_st != null) {
+                result.addAll(field_st);
+            }
+        }
+        return result.build();
+    }
+
+    // the local that already holds what the load x = base.f at u would read, null if u is no such load
+    Local replacement(Unit u, State in) {
         if (!(u instanceof AssignStmt)) return null;
 
         AssignStmt as = (AssignStmt) u;
@@ -381,80 +822,62 @@ public class AnalysisTransformer extends BodyTransformer {
         Local base = (Local) fr.getBase();
         SootField field = fr.getField();
 
-        Set<AbsObj> loaded = new HashSet<>();
-
-        Set<AbsObj> base_st = in.stack.getOrDefault(base, Collections.emptySet());
-
-        for(AbsObj obj : base_st) {
-            Map<SootField, Set<AbsObj>> fieldMap = in.heap.get(obj);
-            if(fieldMap == null) continue;
-
-            Set<AbsObj> field_st = fieldMap.get(field);
-            if(field_st != null) {
-                loaded.addAll(field_st);
-            }
-        }
+        PtsSet loaded = load(in, base, field);
 
         if(loaded.isEmpty()) return null;
         
         Local replaceVar = null;
 
-        for (Map.Entry<Local, Set<AbsObj>> e : in.stack.entrySet()) {
-            Local v = e.getKey();
-
-            if (v.equals(x)) continue;
-            if (v.getName().startsWith("$")) continue;
-
-            if (e.getValue().equals(loaded)) {
+        // first declared local holding exactly the loaded set
+        for (Local v : in.holders().getOrDefault(loaded, Collections.emptyList())) {
+            if (!v.equals(x)) {
                 replaceVar = v;
                 break;
             }
         }
 
-        if (replaceVar == null) return null;
+        return replaceVar;
+    }
 
-        String loadStr =
-        base.getName() + ".<" +
-        field.getDeclaringClass().getName() + ": " +
-        field.getType() + " " +
-        field.getName() + ">";
+    Results.Result result(Body body, Unit u, Local replaceVar) {
+        InstanceFieldRef fr = (InstanceFieldRef) ((AssignStmt) u).getRightOp();
+        SootField field = fr.getField();
+        // unlike getSignature, never quotes names
+        String sig = "<" + field.getDeclaringClass().getName() + ": " + field.getType() + " " + field.getName() + ">";
 
-        return
-        u.getJavaSourceStartLineNumber() + ":" +
-        loadStr + " " +
-        replaceVar.getName();
+        SootMethod m = body.getMethod();
+        return new Results.Result(m.getDeclaringClass().getName(), m.getName(),
+            u.getJavaSourceStartLineNumber(), ((Local) fr.getBase()).getName(), sig, replaceVar.getName());
     }
     
-    @Override
-    protected void internalTransform(Body body, String phaseName, Map<String, String> options) {
-
-        UnitGraph graph = new BriefUnitGraph(body);
-        Chain<Unit> units = body.getUnits();
-        Map<Unit, State> IN = new HashMap<>();
-        Map<Unit, State> OUT = new HashMap<>();
-
-        for (Unit u : graph) {
-            IN.put(u, new State());
-            OUT.put(u, new State());
-        }
-
-        Queue<Unit> worklist = new LinkedList<>(units);
-        // worklist.addAll(graph.getHeads());
+    void solve(DirectedGraph<Unit> graph, Sites sites, Map<Unit, State> IN, Map<Unit, State> OUT, Worklist<Unit> worklist) {
+        // the IN state OUT[u] was last computed from; IN[u] is only replaced when it changes,
+        // so the same object means the transfer would give the same OUT again
+        Map<Unit, State> transferred = new HashMap<>();
 
         while (!worklist.isEmpty()) {
             Unit u = worklist.poll();
+            sites.budget.tick();
 
-            State newIn = new State();
+            State newIn = new State(sites);
 
             for (Unit pre : graph.getPredsOf(u)) {
                 joinIn(newIn, OUT.get(pre));
             }
             if (!stateEquals(IN.get(u), newIn)) {
                 IN.put(u, newIn);
+                sites.peaks(newIn);
             }
 
+            State in = IN.get(u);
+            if (transferred.put(u, in) == in) continue;
+
             State oldOut = OUT.get(u);
-            State newOut = dataFlow(u, IN.get(u));
+            State newOut = dataFlow(u, in);
+            killDead(u, newOut);
+            collect(u, newOut);
+            sites.budget.check(newOut);
+            sites.peaks(newOut);
 
             if (!stateEquals(oldOut, newOut)) {
 
@@ -465,21 +888,318 @@ public class AnalysisTransformer extends BodyTransformer {
                 }
             }
         }
-        List<String> results = new ArrayList<>();
+    }
+
+    // Delta propagation: IN[u] is kept across visits and only receives the facts
+    // a predecessor's OUT gained since it was last propagated, instead of being
+    // rebuilt from the full OUT of every predecessor. OUT[u] is replaced, not
+    // joined, as in solve: when the new OUT lost a fact (a strong update, a
+    // call, a dead temporary or a collected object), a delta cannot remove it
+    // from the successors, so their IN is rebuilt from their predecessors.
+    void solveDelta(DirectedGraph<Unit> graph, Sites sites, Map<Unit, State> IN, Map<Unit, State> OUT, Worklist<Unit> worklist) {
+        Map<Unit, State> pending = new HashMap<>();
+        Set<Unit> visited = new HashSet<>();
+        Set<Unit> rebuilt = new HashSet<>();
+
+        while (!worklist.isEmpty()) {
+            Unit u = worklist.poll();
+            sites.budget.tick();
+
+            State delta = pending.remove(u);
+            boolean inChanged = delta != null && joinIn(IN.get(u), delta);
+            inChanged |= rebuilt.remove(u);
+            boolean firstVisit = visited.add(u);
+            if (!inChanged && !firstVisit) continue;
+
+            sites.peaks(IN.get(u));
+            State newOut = dataFlow(u, IN.get(u));
+            killDead(u, newOut);
+            collect(u, newOut);
+            sites.budget.check(newOut);
+            sites.peaks(newOut);
+
+            State oldOut = OUT.get(u);
+            OUT.put(u, newOut);
+            // old facts missing from newOut, checked on a copy before oldOut takes the new ones
+            boolean lost = joinIn(newOut.copy(), oldOut);
+            State added = new State(sites);
+            boolean gained = joinIn(oldOut, newOut, added);
+
+            for (Unit succ : graph.getSuccsOf(u)) {
+                if (lost) {
+                    // the pending facts of succ are in its predecessors' OUT too
+                    State in = new State(sites);
+                    for (Unit pre : graph.getPredsOf(succ)) joinIn(in, OUT.get(pre));
+                    IN.put(succ, in);
+                    pending.remove(succ);
+                    rebuilt.add(succ);
+                } else if (gained) {
+                    joinIn(pending.computeIfAbsent(succ, k -> new State(sites)), added);
+                } else {
+                    continue;
+                }
+                worklist.add(succ);
+            }
+        }
+    }
+
+    // graphs smaller than this are not worth splitting into regions
+    static final int PARALLEL_NODES = 256;
+
+    /*
+     * solve over the regions of graph (see Regions) on the common fork-join
+     * pool: a region starts once the regions before it are done and solves its
+     * components in topological order, each with solve on a worklist of its
+     * own. The least fixpoint does not depend on the visiting order, so the
+     * states are the ones solve computes on the whole graph. Returns the
+     * number of regions and adds the iterations to worklist and the time spent
+     * in the regions, summed over threads, to work.
+     */
+    int solveParallel(DirectedGraph<Unit> graph, Sites sites, Map<Unit, State> IN, Map<Unit, State> OUT,
+                      Worklist<Unit> worklist, AtomicLong work) {
+        Regions<Unit> regions = new Regions<>(graph);
+        ParallelRun run = new ParallelRun(regions, sites, IN, OUT, work);
+        run.start();
+        worklist.iterations += run.iterations.get();
+        return regions.regions.size();
+    }
+
+    private final class ParallelRun {
+        final Sites sites;
+        final Map<Unit, State> IN;
+        final Map<Unit, State> OUT;
+        final AtomicLong work;
+        final AtomicInteger iterations = new AtomicInteger();
+        // regions each region still waits for
+        final Map<Regions.Region<Unit>, AtomicInteger> waiting = new IdentityHashMap<>();
+        final CountDownLatch left;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<Regions.Region<Unit>> ready = new ArrayList<>();
+
+        ParallelRun(Regions<Unit> regions, Sites sites, Map<Unit, State> IN, Map<Unit, State> OUT, AtomicLong work) {
+            this.sites = sites;
+            this.IN = IN;
+            this.OUT = OUT;
+            this.work = work;
+            left = new CountDownLatch(regions.regions.size());
+            for (Regions.Region<Unit> r : regions.regions) {
+                waiting.put(r, new AtomicInteger(r.preds.size()));
+                if (r.preds.isEmpty()) ready.add(r);
+            }
+        }
+
+        // this thread takes part too, so a chain of regions never changes threads
+        void start() {
+            if (ready.isEmpty()) return;
+            for (int i = 1; i < ready.size(); i++) fork(ready.get(i));
+            run(ready.get(0));
+            try {
+                left.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            Throwable t = failure.get();
+            if (t instanceof RuntimeException) throw (RuntimeException) t;
+            if (t instanceof Error) throw (Error) t;
+        }
+
+        void fork(Regions.Region<Unit> r) {
+            ForkJoinPool.commonPool().execute(() -> run(r));
+        }
+
+        // solves r, then goes on with one successor that became ready and forks the others
+        void run(Regions.Region<Unit> r) {
+            while (r != null && failure.get() == null) {
+                long start = System.nanoTime();
+                try {
+                    for (Regions.Component<Unit> c : r.components) {
+                        Worklist<Unit> w = new Worklist<>(c);
+                        w.addAll();
+                        solve(c, sites, IN, OUT, w);
+                        iterations.addAndGet(w.iterations);
+                    }
+                } catch (RuntimeException | Error e) {
+                    // nothing after r can run, release the waiting thread
+                    failure.compareAndSet(null, e);
+                    while (left.getCount() > 0) left.countDown();
+                    return;
+                }
+                work.addAndGet(System.nanoTime() - start);
+
+                Regions.Region<Unit> next = null;
+                for (Regions.Region<Unit> s : r.succs) {
+                    if (waiting.get(s).decrementAndGet() > 0) continue;
+                    if (next == null) next = s;
+                    else fork(s);
+                }
+                left.countDown();
+                r = next;
+            }
+        }
+    }
+
+    // whether every object in pts is a new expression; a call or a constant store stands for many values
+    static boolean allocated(PtsSet pts, Sites sites) {
+        for (int id = pts.nextSetBit(0); id >= 0; id = pts.nextSetBit(id + 1)) {
+            Unit site = sites.obj(id).allocSite;
+            if (!(site instanceof AssignStmt) || !(((AssignStmt) site).getRightOp() instanceof NewExpr)) return false;
+        }
+        return true;
+    }
+
+    // whether a value of type from can be stored in a local of type to without a cast
+    static boolean assignable(Type from, Type to) {
+        if (from.equals(to)) return true;
+        if (!(from instanceof RefLikeType) || !(to instanceof RefLikeType)) return false;
+        return Scene.v().getOrMakeFastHierarchy().canStoreType(from, to);
+    }
+
+    // the metrics row of body's fixpoint, finished or stopped by its budget
+    Metrics.Method record(Body body, Sites sites, Worklist<Unit> worklist, int regions, long fixpointNanos, long workNanos) {
+        Metrics.Method m = metrics.start(body.getMethod().getSignature());
+        m.units = body.getUnits().size();
+        m.nodes = worklist.size();
+        m.iterations = worklist.iterations;
+        m.transfers = sites.transfers.get();
+        m.states = sites.states.get();
+        m.collected = sites.collected.get();
+        m.maxPts = sites.maxPts.get();
+        m.maxStack = sites.maxStack.get();
+        m.maxHeap = sites.maxHeap.get();
+        m.regions = regions;
+        m.fixpointNanos = fixpointNanos;
+        m.workNanos = workNanos;
+        return m;
+    }
+
+    void addResults(Body body, List<Results.Result> found) {
+        results.add(body.getMethod().getDeclaringClass().getName(), body.getMethod().getName(), found);
+    }
+
+    @Override
+    protected void internalTransform(Body body, String phaseName, Map<String, String> options) {
+        long start = System.nanoTime();
+        try {
+            analyse(body, options);
+        } finally {
+            nanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    void analyse(Body body, Map<String, String> options) {
+        if (PhaseOptions.getBoolean(options, "summaries")) summaries.summariseAll();
+
+        ResultCache.Key cacheKey = null;
+        // a cached result cannot rewrite the body, so rewriting always analyses
+        if (cache != null && !PhaseOptions.getBoolean(options, "rewrite")) {
+            cacheKey = ResultCache.key(body, options, summaries);
+            List<String> cached = cache.get(cacheKey);
+            if (cached != null) {
+                List<Results.Result> found = new ArrayList<>(cached.size());
+                for (String text : cached) {
+                    found.add(Results.Result.parse(body.getMethod().getDeclaringClass().getName(),
+                        body.getMethod().getName(), text));
+                }
+                addResults(body, found);
+                return;
+            }
+        }
+
+        UnitGraph cfg = new BriefUnitGraph(body);
+        Sites sites = new Sites(body, PhaseOptions.getBoolean(options, "summaries") ? summaries : null);
+        DirectedGraph<Unit> graph = PhaseOptions.getBoolean(options, "sparse")
+            ? new SparseGraph(cfg, u -> !(sites.transfer(u) instanceof Identity))
+            : cfg;
+        boolean gc = PhaseOptions.getBoolean(options, "gc");
+        LiveLocals live = gc || PhaseOptions.getBoolean(options, "liveness") ? new SimpleLiveLocals(cfg) : null;
+        if (PhaseOptions.getBoolean(options, "liveness")) sites.dead = deadTemporaries(graph, live);
+        if (gc) {
+            sites.liveTemporaries = liveTemporaries(cfg, live);
+            sites.collectAt = garbageAt(graph, sites, sites.liveTemporaries);
+        }
+        sites.measure = PhaseOptions.getBoolean(options, "metrics");
+        // the delta solver has no parallel version, and a single core gains nothing from one
+        boolean parallel = PhaseOptions.getBoolean(options, "parallel") && !PhaseOptions.getBoolean(options, "delta")
+            && graph.size() >= PARALLEL_NODES && Runtime.getRuntime().availableProcessors() > 1;
+        Map<Unit, State> IN = parallel ? new ConcurrentHashMap<>() : new HashMap<>();
+        Map<Unit, State> OUT = parallel ? new ConcurrentHashMap<>() : new HashMap<>();
 
         for (Unit u : graph) {
-            String r = redundantCheck(u, IN.get(u), body);
-            if (r != null) results.add(r);
+            IN.put(u, new State(sites));
+            OUT.put(u, new State(sites));
+        }
+
+        Worklist<Unit> worklist = new Worklist<>(graph);
+        worklist.addAll();
+
+        long start = System.nanoTime();
+        sites.budget = new Budget(PhaseOptions.getInt(options, "max_millis"),
+            PhaseOptions.getInt(options, "max_iterations"), PhaseOptions.getInt(options, "max_heap"),
+            PhaseOptions.getInt(options, "max_pts"));
+        AtomicLong work = new AtomicLong();
+        int regions = 1;
+        try {
+            if (parallel)
+                regions = solveParallel(graph, sites, IN, OUT, worklist, work);
+            else if (PhaseOptions.getBoolean(options, "delta"))
+                solveDelta(graph, sites, IN, OUT, worklist);
+            else
+                solve(graph, sites, IN, OUT, worklist);
+        } catch (OverBudget e) {
+            // not cached: a larger budget may well finish the method
+            results.skip(body.getMethod().getDeclaringClass().getName(), body.getMethod().getName(), e.getMessage());
+            if (PhaseOptions.getBoolean(options, "metrics")) {
+                long fixpoint = System.nanoTime() - start;
+                Metrics.Method m = record(body, sites, worklist, regions, fixpoint, parallel ? work.get() : fixpoint);
+                m.skipped = e.getMessage();
+            }
+            return;
+        }
+        long fixpoint = System.nanoTime();
+        if (!parallel) work.set(fixpoint - start);
+
+        if (Options.v().verbose()) {
+            System.out.println("[dfa] " + body.getMethod().getSignature() + ": "
+                + worklist.size() + " units, " + worklist.iterations + " iterations");
         }
+        List<Results.Result> found = new ArrayList<>();
 
-        if (!results.isEmpty()) {
-            String key =
-                body.getMethod().getDeclaringClass().getName() + ":" +
-                body.getMethod().getName();
+        boolean rewrite = PhaseOptions.getBoolean(options, "rewrite");
+        Map<AssignStmt, Local> loads = new LinkedHashMap<>();
+        for (Unit u : graph) {
+            Local replaceVar = replacement(u, IN.get(u));
+            if (replaceVar == null) continue;
+            found.add(result(body, u, replaceVar));
+            AssignStmt as = (AssignStmt) u;
+            InstanceFieldRef fr = (InstanceFieldRef) as.getRightOp();
+            if (rewrite && assignable(replaceVar.getType(), as.getLeftOp().getType())
+                && allocated(load(IN.get(u), (Local) fr.getBase(), fr.getField()), sites))
+                loads.put(as, replaceVar);
+        }
+        if (!loads.isEmpty()) {
+            // equal points-to sets do not make equal values, the replacement must hold the loaded one
+            AvailableLoads available = new AvailableLoads(cfg);
+            loads.keySet().removeIf(as -> !available.holds(as, loads.get(as)));
+        }
+        if (!loads.isEmpty()) {
+            // Summaries read every body before the first one is analysed, so none of them reads this one now
+            for (Map.Entry<AssignStmt, Local> e : loads.entrySet()) e.getKey().setRightOp(e.getValue());
+            rewritten.addAndGet(loads.size());
+        }
+
+        if (PhaseOptions.getBoolean(options, "metrics")) {
+            Metrics.Method m = record(body, sites, worklist, regions, fixpoint - start, work.get());
+            m.checkNanos = System.nanoTime() - fixpoint;
+            m.results = found.size();
+        }
 
-            allResults.putIfAbsent(key, new ArrayList<>());
-            allResults.get(key).addAll(results);
+        if (cacheKey != null) {
+            List<String> texts = new ArrayList<>(found.size());
+            for (Results.Result r : found) texts.add(r.text());
+            cache.put(cacheKey, texts);
         }
+        addResults(body, found);
 
         // for (Unit u : graph) { 
         //         System.out.println("================================="); 
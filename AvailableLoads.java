@@ -0,0 +1,133 @@
+import java.util.*;
+import soot.*;
+import soot.jimple.*;
+import soot.toolkits.graph.UnitGraph;
+
+/*
+ * Must-analysis for the rewrite option: before each unit, the locals that
+ * hold the value of base.f (or of a static field, or of another local) on
+ * every path, because they were loaded from, stored into or copied from it
+ * and nothing involved changed since. Equal points-to sets only say that two
+ * locals may point to the same objects, this says they hold the same value,
+ * which is what replacing a load needs. A store to f forgets f on every base
+ * since bases may alias, and a call forgets every field. Volatile fields are
+ * never available.
+ */
+final class AvailableLoads {
+
+    // how many loads deep same() follows bases, e.g. a.f.g and b.f.g with a == b
+    private static final int DEPTH = 3;
+
+    // local holds base.field; base is null for a static field, field is null for a copy of base
+    private static final class Fact {
+        final Local local;
+        final Local base;
+        final SootField field;
+
+        Fact(Local local, Local base, SootField field) {
+            this.local = local;
+            this.base = base;
+            this.field = field;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Fact)) return false;
+            Fact f = (Fact) o;
+            return f.local == local && f.base == base && f.field == field;
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(local) * 31 + System.identityHashCode(base)) * 31
+                + System.identityHashCode(field);
+        }
+    }
+
+    private final Map<Unit, Set<Fact>> before = new HashMap<>();
+
+    AvailableLoads(UnitGraph cfg) {
+        // a missing OUT is the top element: the unit has not been reached yet
+        Map<Unit, Set<Fact>> after = new HashMap<>();
+        Worklist<Unit> worklist = new Worklist<>(cfg);
+        worklist.addAll();
+        while (!worklist.isEmpty()) {
+            Unit u = worklist.poll();
+            Set<Fact> in = null;
+            for (Unit p : cfg.getPredsOf(u)) {
+                Set<Fact> out = after.get(p);
+                if (out == null) continue;
+                if (in == null) in = new HashSet<>(out);
+                else in.retainAll(out);
+            }
+            if (in == null || cfg.getHeads().contains(u)) in = new HashSet<>();
+            before.put(u, in);
+
+            Set<Fact> out = transfer(u, in);
+            if (!out.equals(after.put(u, out))) {
+                for (Unit s : cfg.getSuccsOf(u)) worklist.add(s);
+            }
+        }
+    }
+
+    // whether local holds the value the load x = base.f reads
+    boolean holds(AssignStmt load, Local local) {
+        InstanceFieldRef fr = (InstanceFieldRef) load.getRightOp();
+        Set<Fact> in = before.get(load);
+        if (in == null) return false;
+        for (Fact f : in) {
+            if (f.field == fr.getField() && f.base != null
+                && same(in, f.local, local, DEPTH) && same(in, f.base, (Local) fr.getBase(), DEPTH))
+                return true;
+        }
+        return false;
+    }
+
+    // a and b hold the same value: one local, copies, or loads of one field of bases that are the same
+    private static boolean same(Set<Fact> in, Local a, Local b, int depth) {
+        if (a == b) return true;
+        if (in.contains(new Fact(a, b, null)) || in.contains(new Fact(b, a, null))) return true;
+        if (depth == 0) return false;
+        for (Fact x : in) {
+            if (x.local != a || x.field == null) continue;
+            for (Fact y : in) {
+                if (y.local != b || y.field != x.field) continue;
+                if (x.base == null ? y.base == null : y.base != null && same(in, x.base, y.base, depth - 1))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<Fact> transfer(Unit u, Set<Fact> in) {
+        Set<Fact> out = new HashSet<>(in);
+        Stmt s = (Stmt) u;
+        if (s.containsInvokeExpr()) out.removeIf(fact -> fact.field != null);
+
+        Value lhs = s instanceof AssignStmt ? ((AssignStmt) s).getLeftOp() : null;
+        Value rhs = s instanceof AssignStmt ? ((AssignStmt) s).getRightOp() : null;
+        if (lhs instanceof FieldRef) {
+            SootField f = ((FieldRef) lhs).getField();
+            out.removeIf(fact -> fact.field == f);
+        }
+        for (ValueBox b : u.getDefBoxes()) {
+            if (!(b.getValue() instanceof Local)) continue;
+            Local l = (Local) b.getValue();
+            out.removeIf(fact -> fact.local == l || fact.base == l);
+        }
+
+        // x = base.f and base.f = x both leave x holding base.f, likewise for statics and copies
+        if (lhs instanceof Local && rhs instanceof FieldRef) {
+            Local base = rhs instanceof InstanceFieldRef ? (Local) ((InstanceFieldRef) rhs).getBase() : null;
+            SootField f = ((FieldRef) rhs).getField();
+            if (base != lhs && !Modifier.isVolatile(f.getModifiers())) out.add(new Fact((Local) lhs, base, f));
+        } else if (lhs instanceof FieldRef && rhs instanceof Local) {
+            Local base = lhs instanceof InstanceFieldRef ? (Local) ((InstanceFieldRef) lhs).getBase() : null;
+            SootField f = ((FieldRef) lhs).getField();
+            if (!Modifier.isVolatile(f.getModifiers())) out.add(new Fact((Local) rhs, base, f));
+        } else if (lhs instanceof Local && rhs instanceof Local && lhs != rhs) {
+            out.add(new Fact((Local) lhs, (Local) rhs, null));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,117 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+ * Per-method profile of the jtp.dfa phase, written by PA2 -metrics as CSV,
+ * or as JSON when the file name ends in .json.
+ */
+final class Metrics {
+
+    static final class Method {
+        final String target;
+        final String method;
+        int units;          // statements in the body
+        int nodes;          // nodes the solver ran on (fewer than units in sparse mode)
+        int iterations;     // worklist pops
+        int transfers;      // dataFlow calls
+        int states;         // State objects created
+        int maxPts;         // largest points-to set in any state the solver computed
+        int maxStack;       // most locals in one stack
+        int maxHeap;        // most abstract objects in one heap
+        int collected;      // heap entries dropped by the abstract GC
+        int regions;        // regions solved concurrently, 1 when sequential
+        long fixpointNanos;
+        long workNanos;     // fixpoint time summed over the regions' threads
+        long checkNanos;    // finding the redundant loads over all units
+        int results;
+        String skipped = "";    // why the budget stopped the fixpoint, see AnalysisTransformer.Budget
+
+        Method(String target, String method) {
+            this.target = target;
+            this.method = method;
+        }
+
+        static final String[] COLUMNS = {
+            "target", "method", "units", "nodes", "iterations", "transfers", "states",
+            "maxPts", "maxStack", "maxHeap", "collected", "regions",
+            "fixpointMicros", "workMicros", "speedup", "checkMicros", "results", "skipped"
+        };
+
+        // work over wall time of the fixpoint, rounded to two decimals
+        double speedup() {
+            return fixpointNanos == 0 ? 1 : Math.round(100.0 * workNanos / fixpointNanos) / 100.0;
+        }
+
+        Object[] values() {
+            return new Object[] {
+                target, method, units, nodes, iterations, transfers, states,
+                maxPts, maxStack, maxHeap, collected, regions,
+                fixpointNanos / 1000, workNanos / 1000, speedup(), checkNanos / 1000, results, skipped
+            };
+        }
+    }
+
+    private final Queue<Method> methods = new ConcurrentLinkedQueue<>();
+    // analysed directory or jar, set by the driver before each Soot run
+    volatile String target = "";
+
+    Method start(String method) {
+        Method m = new Method(target, method);
+        methods.add(m);
+        return m;
+    }
+
+    List<Method> methods() {
+        List<Method> l = new ArrayList<>(methods);
+        l.sort(Comparator.comparing((Method m) -> m.target).thenComparing(m -> m.method));
+        return l;
+    }
+
+    void write(String file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            if (file.endsWith(".json")) writeJson(out);
+            else writeCsv(out);
+        }
+    }
+
+    void writeCsv(PrintWriter out) {
+        out.println(String.join(",", Method.COLUMNS));
+        for (Method m : methods()) {
+            Object[] v = m.values();
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < v.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(v[i] instanceof String ? "\"" + ((String) v[i]).replace("\"", "\"\"") + "\"" : v[i]);
+            }
+            out.println(sb);
+        }
+    }
+
+    void writeJson(PrintWriter out) {
+        out.println("[");
+        List<Method> l = methods();
+        for (int k = 0; k < l.size(); k++) {
+            Object[] v = l.get(k).values();
+            StringBuilder sb = new StringBuilder("  {");
+            for (int i = 0; i < v.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append('"').append(Method.COLUMNS[i]).append("\": ");
+                sb.append(v[i] instanceof String ? json((String) v[i]) : v[i]);
+            }
+            sb.append(k + 1 < l.size() ? "}," : "}");
+            out.println(sb);
+        }
+        out.println("]");
+    }
+
+    static String json(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -1,25 +1,345 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
 import soot.*;
 import soot.options.Options;
 
 public class PA2 {
-    public static void main(String[] args) {
-        String classpath = "./testcases/" + args[0];
+    static final String USAGE = "usage: PA2 <TestDir|dir|jar|glob>... [-threads N] [-delta] [-parallel] [-sparse] [-summaries] [-no-liveness] [-no-gc]"
+        + " [-metrics file.csv|file.json] [-cache file] [-rewrite | -analysis-only] [-d outdir]"
+        + " [-stream] [-json] [-max-millis|-max-iterations|-max-heap|-max-pts N]\n"
+        + "       PA2 -serve [-port N]";
 
-        String[] sootArgs = {
+    // one analysis run: the command line, or one line of the server protocol
+    static final class Request {
+        final List<String> targets = new ArrayList<>();
+        int threads = 1;
+        String metricsFile;
+        String cacheFile;
+        boolean rewrite;
+        boolean analysisOnly;
+        boolean stream;
+        boolean json;
+        String outputDir;
+        final List<String> dfaOptions = new ArrayList<>();
+        boolean serve;
+        int port = -1;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Request request;
+        try {
+            request = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (request.serve) {
+            serve(request.port);
+        } else if (request.targets.isEmpty()) {
+            System.err.println(USAGE);
+            System.exit(1);
+        } else {
+            run(request, System.out, System.err);
+        }
+    }
+
+    static Request parse(String[] args) throws IOException {
+        Request r = new Request();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-threads")) {
+                // 0 or less lets Soot use one thread per core
+                r.threads = Integer.parseInt(value(args, i++));
+            } else if (args[i].equals("-delta")) {
+                r.dfaOptions.add("delta:true");
+            } else if (args[i].equals("-parallel")) {
+                // solve the regions of large methods concurrently
+                r.dfaOptions.add("parallel:true");
+            } else if (args[i].equals("-sparse")) {
+                r.dfaOptions.add("sparse:true");
+            } else if (args[i].equals("-no-liveness")) {
+                // keep dead temporaries in the abstract stack
+                r.dfaOptions.add("liveness:false");
+            } else if (args[i].equals("-no-gc")) {
+                // keep unreachable objects in the abstract heap
+                r.dfaOptions.add("gc:false");
+            } else if (args[i].equals("-summaries")) {
+                r.dfaOptions.add("summaries:true");
+            } else if (args[i].startsWith("-max-")) {
+                // per-method budgets, a method that exceeds one is skipped:
+                // -max-millis, -max-iterations, -max-heap (objects), -max-pts (points-to set size of a local, static or field)
+                String limit = args[i].substring("-max-".length());
+                if (!Arrays.asList("millis", "iterations", "heap", "pts").contains(limit))
+                    throw new IllegalArgumentException("unknown budget " + args[i] + "\n" + USAGE);
+                r.dfaOptions.add("max_" + limit + ":" + Integer.parseInt(value(args, i++)));
+            } else if (args[i].equals("-metrics")) {
+                // per-method profile, CSV or JSON by file extension
+                r.metricsFile = value(args, i++);
+                r.dfaOptions.add("metrics:true");
+            } else if (args[i].equals("-cache")) {
+                // results of unchanged method bodies are read from and added to this file
+                r.cacheFile = value(args, i++);
+            } else if (args[i].equals("-rewrite")) {
+                // replace redundant loads and write verified class files instead of Jimple
+                r.rewrite = true;
+                r.dfaOptions.add("rewrite:true");
+            } else if (args[i].equals("-analysis-only")) {
+                // only the target's classes are loaded, the JDK stays phantom, nothing is written
+                r.analysisOnly = true;
+            } else if (args[i].equals("-stream")) {
+                // print each method's results when it is done instead of sorted at the end
+                r.stream = true;
+            } else if (args[i].equals("-json")) {
+                // one JSON object per result and line
+                r.json = true;
+            } else if (args[i].equals("-d")) {
+                // where Soot writes the Jimple or class files, sootOutput by default
+                r.outputDir = value(args, i++);
+            } else if (args[i].equals("-serve")) {
+                r.serve = true;
+            } else if (args[i].equals("-port")) {
+                r.port = Integer.parseInt(value(args, i++));
+            } else if (args[i].startsWith("-")) {
+                throw new IllegalArgumentException("unknown option " + args[i] + "\n" + USAGE);
+            } else {
+                // a target named twice, directly or through a glob, is analysed once
+                for (String target : expand(args[i])) {
+                    if (!r.targets.contains(target)) r.targets.add(target);
+                }
+            }
+        }
+        if (r.rewrite && r.analysisOnly)
+            throw new IllegalArgumentException("-rewrite writes class files, it cannot be combined with -analysis-only");
+        return r;
+    }
+
+    // the argument after the option at i
+    static String value(String[] args, int i) {
+        if (i + 1 >= args.length) throw new IllegalArgumentException(args[i] + " needs a value\n" + USAGE);
+        return args[i + 1];
+    }
+
+    // analyses every target of the request with a transformer of its own, so nothing is shared between requests
+    static void run(Request request, PrintStream out, PrintStream log) throws IOException {
+        // several targets run one after another in this JVM, Soot is reset in between
+        boolean batch = request.targets.size() > 1;
+        AnalysisTransformer analysisTransformer = new AnalysisTransformer();
+        analysisTransformer.results = new Results(out, request.stream, request.json);
+        Map<String, Long> times = new LinkedHashMap<>();
+        if (request.cacheFile != null) analysisTransformer.cache = new ResultCache(Paths.get(request.cacheFile));
+        long runStart = System.nanoTime();
+
+        for (String target : request.targets) {
+            long start = System.nanoTime();
+            if (batch && !request.json) out.println("== " + target);
+            analysisTransformer.metrics.target = target;
+            analysisTransformer.results.target = target;
+            try {
+                if (request.analysisOnly)
+                    analyseOnly(analysisTransformer, classpath(target), request, target, log);
+                else
+                    analyse(analysisTransformer, classpath(target), request);
+                analysisTransformer.printResults();
+                if (request.rewrite) verify(analysisTransformer, target, log);
+            } catch (RuntimeException e) {
+                if (!batch) throw e;
+                log.println("[batch] " + target + " failed: " + e);
+            } finally {
+                analysisTransformer.reset();
+            }
+            times.put(target, System.nanoTime() - start);
+        }
+
+        if (batch) {
+            long total = 0;
+            for (Map.Entry<String, Long> e : times.entrySet()) {
+                log.println("[batch] " + e.getKey() + ": " + e.getValue() / 1000000 + " ms");
+                total += e.getValue();
+            }
+            log.println("[batch] " + request.targets.size() + " targets: " + total / 1000000 + " ms");
+        }
+        if (request.metricsFile != null) analysisTransformer.metrics.write(request.metricsFile);
+
+        ResultCache cache = analysisTransformer.cache;
+        if (cache != null) {
+            cache.save();
+            int hits = cache.hits.get();
+            int lookups = hits + cache.misses.get();
+            log.println("[cache] " + hits + "/" + lookups + " hits ("
+                + (lookups == 0 ? 0 : 100 * hits / lookups) + "%), "
+                + (System.nanoTime() - runStart) / 1000000 + " ms");
+        }
+    }
+
+    // runs the jtp.dfa phase over one class directory or jar, on a freshly reset Soot
+    static void analyse(AnalysisTransformer analysisTransformer, String classpath, Request request) {
+        List<String> sootArgs = setup(analysisTransformer, request, Arrays.asList(
                 "-cp", classpath,
                 "-pp",
-                "-f", "J",
-                "-t", "1",
-                "-main-class", "Test",
+                "-f", request.rewrite ? "c" : "J",
                 "-process-dir", classpath
-        };
+        ));
+        if (request.outputDir != null) {
+            sootArgs.add("-d");
+            sootArgs.add(request.outputDir);
+        }
 
-        AnalysisTransformer analysisTransformer = new AnalysisTransformer();
-        PackManager.v().getPack("jtp").add(new Transform("jtp.dfa", analysisTransformer));
+        // unlike soot.Main.main, run() throws instead of exiting, so a batch can go on
+        soot.Main.v().run(sootArgs.toArray(new String[0]));
+    }
+
+    /*
+     * Same analysis without the JDK: only the classes of the target are
+     * loaded (with bodies), every other class, the basic classes included, is
+     * a phantom. Nothing is written. Results match analyse, which spends most
+     * of a small target's time loading the JDK classes that -pp puts on the
+     * classpath. Logs the Scene loading time and the body pack time, of which
+     * jtp.dfa takes the given part (summed over threads).
+     */
+    static void analyseOnly(AnalysisTransformer analysisTransformer, String classpath, Request request,
+                            String target, PrintStream log) {
+        long start = System.nanoTime();
+        List<String> sootArgs = setup(analysisTransformer, request, Arrays.asList(
+                "-cp", classpath,
+                "-allow-phantom-refs",
+                "-f", "n",
+                "-process-dir", classpath
+        ));
+        if (!Options.v().parse(sootArgs.toArray(new String[0])))
+            throw new IllegalArgumentException("bad Soot options " + sootArgs);
+
+        // loadNecessaryClasses would fail without java.lang.Object on the classpath
+        Scene scene = Scene.v();
+        for (String name : scene.getBasicClasses()) {
+            if (!scene.containsClass(name)) {
+                SootClass c = new SootClass(name);
+                scene.addClass(c);
+                c.setPhantomClass();
+            }
+        }
+        for (String name : SourceLocator.v().getClassesUnder(classpath))
+            scene.loadClassAndSupport(name).setApplicationClass();
+        scene.setDoneResolving();
+        long loaded = System.nanoTime();
+
+        analysisTransformer.nanos.set(0);
+        PackManager.v().runPacks();
+        long done = System.nanoTime();
+        log.println("[time] " + target + ": scene " + (loaded - start) / 1000000 + " ms ("
+            + scene.getApplicationClasses().size() + " classes, " + scene.getPhantomClasses().size() + " phantom), packs "
+            + (done - loaded) / 1000000 + " ms, jtp.dfa " + analysisTransformer.nanos.get() / 1000000 + " ms");
+    }
+
+    // resets Soot, registers jtp.dfa and returns args followed by the options shared by both modes
+    static List<String> setup(AnalysisTransformer analysisTransformer, Request request, List<String> args) {
+        G.reset();
+
+        List<String> sootArgs = new ArrayList<>(args);
+        sootArgs.addAll(Arrays.asList(
+                "-t", String.valueOf(request.threads),
+                "-main-class", "Test"
+        ));
+        for (String opt : request.dfaOptions) {
+            sootArgs.add("-p");
+            sootArgs.add("jtp.dfa");
+            sootArgs.add(opt);
+        }
+
+        Transform dfa = new Transform("jtp.dfa", analysisTransformer);
+        dfa.setDeclaredOptions(AnalysisTransformer.DECLARED_OPTIONS);
+        dfa.setDefaultOptions(AnalysisTransformer.DEFAULT_OPTIONS);
+        PackManager.v().getPack("jtp").add(dfa);
         Options.v().set_keep_line_number(true);
+        return sootArgs;
+    }
+
+    // checks the class files of the last Soot run; a failure counts as a failed target
+    static void verify(AnalysisTransformer analysisTransformer, String target, PrintStream log) throws IOException {
+        Collection<SootClass> classes = Scene.v().getApplicationClasses();
+        List<String> problems = Verifier.verify(classes, classpath(target));
+        if (!problems.isEmpty())
+            throw new IllegalStateException("rewritten classes do not verify:\n  " + String.join("\n  ", problems));
+        log.println("[rewrite] " + target + ": " + analysisTransformer.rewritten.getAndSet(0)
+            + " loads replaced, " + classes.size() + " classes verified");
+    }
+
+    // a bare name is a directory under ./testcases, anything else a path
+    static String classpath(String target) {
+        return Files.isDirectory(Paths.get("./testcases", target)) ? "./testcases/" + target : target;
+    }
+
+    // a target with glob characters in its last component becomes the sorted list of matching entries
+    static List<String> expand(String target) throws IOException {
+        if (!target.contains("*") && !target.contains("?") && !target.contains("[")) {
+            return Collections.singletonList(target);
+        }
+        Path pattern = Paths.get(target);
+        Path parent = pattern.getParent();
+        Path dir = parent != null ? parent : Paths.get("./testcases");
+        List<String> found = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir, pattern.getFileName().toString())) {
+            for (Path p : entries) found.add(parent != null ? p.toString() : p.getFileName().toString());
+        }
+        Collections.sort(found);
+        return found;
+    }
+
+    /*
+     * Server mode keeps the JVM (and its JIT-compiled Soot) alive between
+     * requests. It reads one request per line from stdin, or from each
+     * connection to 127.0.0.1:<port> when a port is given. A request has the
+     * same syntax as the command line, e.g. "Test1 Test2 -sparse". The reply
+     * is the usual results report followed by "#ok <ms> ms", or by
+     * "#error <message>". "quit" ends the session. Requests run one at a
+     * time because Soot's state is global.
+     */
+    static void serve(int port) throws IOException {
+        // Soot prints its progress on System.out, which must carry replies only
+        PrintStream replies = new PrintStream(new FileOutputStream(FileDescriptor.out), true, "UTF-8");
+        System.setOut(System.err);
+
+        if (port < 0) {
+            serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), replies);
+            return;
+        }
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.err.println("[server] listening on " + server.getInetAddress().getHostAddress()
+                + ":" + server.getLocalPort());
+            while (true) {
+                try (Socket client = server.accept()) {
+                    serve(new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8)),
+                        new PrintStream(client.getOutputStream(), true, "UTF-8"));
+                } catch (IOException e) {
+                    System.err.println("[server] connection failed: " + e);
+                }
+            }
+        }
+    }
 
-        soot.Main.main(sootArgs);
-        AnalysisTransformer.printResults();
+    static void serve(BufferedReader in, PrintStream out) throws IOException {
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            if (line.equals("quit")) break;
 
+            long start = System.nanoTime();
+            try {
+                Request request = parse(line.split("\\s+"));
+                if (request.targets.isEmpty() || request.serve) throw new IllegalArgumentException(USAGE);
+                run(request, out, System.err);
+                long ms = (System.nanoTime() - start) / 1000000;
+                out.println("#ok " + ms + " ms");
+                System.err.println("[server] " + line + ": " + ms + " ms");
+            } catch (RuntimeException | IOException e) {
+                out.println("#error " + String.valueOf(e.getMessage()).replace('\n', ' '));
+                System.err.println("[server] " + line + " failed: " + e);
+            }
+            out.flush();
+        }
     }
 }
@@ -0,0 +1,378 @@
+import java.util.*;
+
+/*
+ * Persistent hash map (hash array mapped trie).
+ * put/remove never modify a map, they return a new one that shares every
+ * untouched node with the old one, so copying a map is free and an update
+ * only allocates the path down to the entry it changes.
+ * Every map also carries a Zobrist-style fingerprint, the sum of a 64-bit mix
+ * of each entry's key and value hashes, kept up to date by put and remove.
+ * Maps with different fingerprints are unequal without looking at the tries.
+ * Keys and values must not be null.
+ */
+final class PMap<K, V> implements Iterable<Map.Entry<K, V>> {
+
+    private static final PMap<?, ?> EMPTY = new PMap<>(null, 0, 0);
+
+    final Node root;
+    final int size;
+    final long fingerprint;
+
+    private PMap(Node root, int size, long fingerprint) {
+        this.root = root;
+        this.size = size;
+        this.fingerprint = fingerprint;
+    }
+
+    // fingerprint of one entry; values that are maps hash in O(1), see hashCode
+    static long mix(Object key, Object val) {
+        long z = ((long) key.hashCode() << 32) ^ (val.hashCode() & 0xffffffffL);
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PMap<K, V> empty() {
+        return (PMap<K, V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        if (root == null) return null;
+        return (V) root.get(key, key.hashCode(), 0);
+    }
+
+    V getOrDefault(Object key, V def) {
+        V v = get(key);
+        return v == null ? def : v;
+    }
+
+    boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    // returns this map when key already maps to the same value instance
+    PMap<K, V> put(K key, V val) {
+        Object[] old = new Object[1];
+        Node r = (root == null ? BitmapNode.EMPTY : root).put(key, key.hashCode(), val, 0, old);
+        if (r == root) return this;
+        long fp = fingerprint + mix(key, val);
+        if (old[0] == null) return new PMap<>(r, size + 1, fp);
+        return new PMap<>(r, size, fp - mix(key, old[0]));
+    }
+
+    PMap<K, V> remove(Object key) {
+        V old = get(key);
+        if (old == null) return this;
+        Node r = root.remove(key, key.hashCode(), 0);
+        if (r == root) return this;
+        if (r == null) return empty();
+        if (r instanceof CollisionNode) {
+            CollisionNode c = (CollisionNode) r;
+            r = c.array.length == 2
+                    ? new BitmapNode(1 << (c.hash & 31), c.array)
+                    : new BitmapNode(1 << (c.hash & 31), new Object[] { null, c });
+        }
+        return new PMap<>(r, size - 1, fingerprint - mix(key, old));
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new Iter<>(root);
+    }
+
+    List<K> keys() {
+        List<K> l = new ArrayList<>(size);
+        for (Map.Entry<K, V> e : this) l.add(e.getKey());
+        return l;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(fingerprint);
+    }
+
+    // the trie shape is canonical for a key set, so equal maps have equal shapes
+    // and reference-equal subtries can be skipped
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof PMap)) return false;
+        PMap<?, ?> other = (PMap<?, ?>) o;
+        if (size != other.size || fingerprint != other.fingerprint) return false;
+        return nodeEquals(root, other.root);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<K, V> e : this) {
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(e.getKey()).append('=').append(e.getValue());
+        }
+        return sb.append('}').toString();
+    }
+
+    static boolean nodeEquals(Node a, Node b) {
+        if (a == b) return true;
+        if (a == null || b == null) return false;
+        if (a instanceof CollisionNode || b instanceof CollisionNode) {
+            if (!(a instanceof CollisionNode && b instanceof CollisionNode)) return false;
+            return ((CollisionNode) a).sameEntries((CollisionNode) b);
+        }
+        BitmapNode x = (BitmapNode) a;
+        BitmapNode y = (BitmapNode) b;
+        if (x.bitmap != y.bitmap) return false;
+        for (int i = 0; i < x.array.length; i += 2) {
+            Object kx = x.array[i], ky = y.array[i];
+            Object vx = x.array[i + 1], vy = y.array[i + 1];
+            if (kx == null && ky == null) {
+                if (!nodeEquals((Node) vx, (Node) vy)) return false;
+            } else if (kx == null || ky == null) {
+                return false;
+            } else if (!kx.equals(ky) || !(vx == vy || vx.equals(vy))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    abstract static class Node {
+        abstract Object get(Object key, int hash, int shift);
+        abstract Node put(Object key, int hash, Object val, int shift, Object[] old);
+        abstract Node remove(Object key, int hash, int shift);
+    }
+
+    // slots hold either (key, value) or (null, child node)
+    static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) return null;
+            int i = 2 * index(bit);
+            Object k = array[i];
+            if (k == null) return ((Node) array[i + 1]).get(key, hash, shift + 5);
+            return key.equals(k) ? array[i + 1] : null;
+        }
+
+        @Override
+        Node put(Object key, int hash, Object val, int shift, Object[] old) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            int i = 2 * index(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] a = new Object[array.length + 2];
+                System.arraycopy(array, 0, a, 0, i);
+                a[i] = key;
+                a[i + 1] = val;
+                System.arraycopy(array, i, a, i + 2, array.length - i);
+                return new BitmapNode(bitmap | bit, a);
+            }
+
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node sub = ((Node) v).put(key, hash, val, shift + 5, old);
+                return sub == v ? this : with(i + 1, null, sub);
+            }
+            if (key.equals(k)) {
+                if (v == val) return this;
+                old[0] = v;
+                return with(i + 1, k, val);
+            }
+            return with(i + 1, null, pair(shift + 5, k, v, key, hash, val));
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) return this;
+            int i = 2 * index(bit);
+            Object k = array[i];
+
+            if (k == null) {
+                Node sub = (Node) array[i + 1];
+                Node n = sub.remove(key, hash, shift + 5);
+                if (n == sub) return this;
+                if (n == null) return without(bit, i);
+                // keep the shape canonical: a single leaf moves back up
+                if (n instanceof BitmapNode && ((BitmapNode) n).array.length == 2
+                        && ((BitmapNode) n).array[0] != null) {
+                    Object[] a = ((BitmapNode) n).array;
+                    return with(i + 1, a[0], a[1]);
+                }
+                if (n instanceof CollisionNode && ((CollisionNode) n).array.length == 2) {
+                    Object[] a = ((CollisionNode) n).array;
+                    return with(i + 1, a[0], a[1]);
+                }
+                if (array.length == 2 && n instanceof CollisionNode) return n;
+                return with(i + 1, null, n);
+            }
+            if (!key.equals(k)) return this;
+            return without(bit, i);
+        }
+
+        private Node without(int bit, int i) {
+            if (array.length == 2) return null;
+            Object[] a = new Object[array.length - 2];
+            System.arraycopy(array, 0, a, 0, i);
+            System.arraycopy(array, i + 2, a, i, array.length - i - 2);
+            BitmapNode n = new BitmapNode(bitmap & ~bit, a);
+            // a lone collision node is level independent, hand it to the parent
+            if (a.length == 2 && a[0] == null && a[1] instanceof CollisionNode) return (Node) a[1];
+            return n;
+        }
+
+        private BitmapNode with(int valIdx, Object key, Object val) {
+            Object[] a = array.clone();
+            a[valIdx - 1] = key;
+            a[valIdx] = val;
+            return new BitmapNode(bitmap, a);
+        }
+    }
+
+    static final class CollisionNode extends Node {
+        final int hash;
+        final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int find(Object key) {
+            for (int i = 0; i < array.length; i += 2)
+                if (key.equals(array[i])) return i;
+            return -1;
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+            if (hash != this.hash) return null;
+            int i = find(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        Node put(Object key, int hash, Object val, int shift, Object[] old) {
+            if (hash != this.hash) {
+                Node n = new BitmapNode(1 << ((this.hash >>> shift) & 31), new Object[] { null, this });
+                return n.put(key, hash, val, shift, old);
+            }
+            int i = find(key);
+            if (i >= 0) {
+                if (array[i + 1] == val) return this;
+                old[0] = array[i + 1];
+                Object[] a = array.clone();
+                a[i + 1] = val;
+                return new CollisionNode(hash, a);
+            }
+            Object[] a = Arrays.copyOf(array, array.length + 2);
+            a[array.length] = key;
+            a[array.length + 1] = val;
+            return new CollisionNode(hash, a);
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift) {
+            if (hash != this.hash) return this;
+            int i = find(key);
+            if (i < 0) return this;
+            if (array.length == 2) return null;
+            Object[] a = new Object[array.length - 2];
+            System.arraycopy(array, 0, a, 0, i);
+            System.arraycopy(array, i + 2, a, i, array.length - i - 2);
+            return new CollisionNode(hash, a);
+        }
+
+        boolean sameEntries(CollisionNode o) {
+            if (hash != o.hash || array.length != o.array.length) return false;
+            for (int i = 0; i < array.length; i += 2) {
+                int j = o.find(array[i]);
+                if (j < 0) return false;
+                Object v = array[i + 1], w = o.array[j + 1];
+                if (!(v == w || v.equals(w))) return false;
+            }
+            return true;
+        }
+    }
+
+    private static Node pair(int shift, Object k1, Object v1, Object k2, int h2, Object v2) {
+        int h1 = k1.hashCode();
+        if (h1 == h2) return new CollisionNode(h1, new Object[] { k1, v1, k2, v2 });
+        Object[] old = new Object[1];
+        return BitmapNode.EMPTY.put(k1, h1, v1, shift, old).put(k2, h2, v2, shift, old);
+    }
+
+    private static final class Iter<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final Deque<Object[]> arrays = new ArrayDeque<>();
+        private final Deque<Integer> positions = new ArrayDeque<>();
+        private Map.Entry<K, V> next;
+
+        Iter(Node root) {
+            if (root != null) push(root);
+            advance();
+        }
+
+        private void push(Node n) {
+            arrays.push(n instanceof BitmapNode ? ((BitmapNode) n).array : ((CollisionNode) n).array);
+            positions.push(0);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (!arrays.isEmpty()) {
+                Object[] a = arrays.peek();
+                int i = positions.pop();
+                if (i >= a.length) {
+                    arrays.pop();
+                    continue;
+                }
+                positions.push(i + 2);
+                if (a[i] == null) {
+                    push((Node) a[i + 1]);
+                } else {
+                    next = new AbstractMap.SimpleImmutableEntry<>((K) a[i], (V) a[i + 1]);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) throw new NoSuchElementException();
+            Map.Entry<K, V> e = next;
+            advance();
+            return e;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.Arrays;
+
+/*
+ * Immutable points-to set over the per-method allocation-site numbers
+ * handed out by AnalysisTransformer.Sites, stored as a bitset.
+ * Trailing zero words are trimmed so equal sets have equal word arrays.
+ */
+final class PtsSet {
+
+    static final PtsSet EMPTY = new PtsSet(new long[0]);
+
+    final long[] words;
+    private final int hash;
+
+    private PtsSet(long[] words) {
+        this.words = words;
+        this.hash = Arrays.hashCode(words);
+    }
+
+    static PtsSet of(int id) {
+        long[] w = new long[(id >>> 6) + 1];
+        w[id >>> 6] = 1L << id;
+        return new PtsSet(w);
+    }
+
+    boolean isEmpty() {
+        return words.length == 0;
+    }
+
+    int size() {
+        int n = 0;
+        for (long w : words) n += Long.bitCount(w);
+        return n;
+    }
+
+    // first member >= from, or -1
+    int nextSetBit(int from) {
+        int i = from >>> 6;
+        if (i >= words.length) return -1;
+        long w = words[i] & (-1L << from);
+        while (true) {
+            if (w != 0) return (i << 6) + Long.numberOfTrailingZeros(w);
+            if (++i == words.length) return -1;
+            w = words[i];
+        }
+    }
+
+    boolean containsAll(PtsSet o) {
+        if (o.words.length > words.length) return false;
+        for (int i = 0; i < o.words.length; i++)
+            if ((o.words[i] & ~words[i]) != 0) return false;
+        return true;
+    }
+
+    // returns this or o when one already contains the other
+    PtsSet union(PtsSet o) {
+        if (o == this || containsAll(o)) return this;
+        if (o.containsAll(this)) return o;
+        long[] big = words.length >= o.words.length ? words : o.words;
+        long[] small = big == words ? o.words : words;
+        long[] w = big.clone();
+        for (int i = 0; i < small.length; i++) w[i] |= small[i];
+        return new PtsSet(w);
+    }
+
+    // members of this set that are not in o
+    PtsSet minus(PtsSet o) {
+        int n = Math.min(words.length, o.words.length);
+        boolean disjoint = true;
+        for (int i = 0; i < n && disjoint; i++)
+            if ((words[i] & o.words[i]) != 0) disjoint = false;
+        if (disjoint) return this;
+        long[] w = words.clone();
+        for (int i = 0; i < n; i++) w[i] &= ~o.words[i];
+        int len = w.length;
+        while (len > 0 && w[len - 1] == 0) len--;
+        if (len == 0) return EMPTY;
+        return new PtsSet(len == w.length ? w : Arrays.copyOf(w, len));
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof PtsSet)) return false;
+        PtsSet p = (PtsSet) o;
+        return hash == p.hash && Arrays.equals(words, p.words);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1))
+            sb.append(' ').append(i);
+        return sb.append(" }").toString();
+    }
+
+    // accumulates a union without allocating intermediate sets
+    static final class Builder {
+        private long[] w = new long[1];
+
+        void addAll(PtsSet s) {
+            if (s.words.length > w.length) w = Arrays.copyOf(w, s.words.length);
+            for (int i = 0; i < s.words.length; i++) w[i] |= s.words[i];
+        }
+
+        PtsSet build() {
+            int n = w.length;
+            while (n > 0 && w[n - 1] == 0) n--;
+            if (n == 0) return EMPTY;
+            return new PtsSet(n == w.length ? w.clone() : Arrays.copyOf(w, n));
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import java.util.*;
+import soot.toolkits.graph.DirectedGraph;
+
+/*
+ * Strongly connected components of a graph, grouped into regions that can be
+ * solved independently once the regions before them are done. A component
+ * joins the region of its only predecessor component when it is also that
+ * component's only successor, so straight-line code stays one region and
+ * every branch of a switch or if starts a region of its own. Regions are
+ * listed in topological order.
+ */
+final class Regions<N> {
+
+    static final class Region<N> {
+        // the components of the region in topological order
+        final List<Component<N>> components = new ArrayList<>();
+        final Set<Region<N>> preds = new LinkedHashSet<>();
+        final Set<Region<N>> succs = new LinkedHashSet<>();
+    }
+
+    /*
+     * One component as a graph of its own for Worklist and the solvers: the
+     * predecessors are those of the whole graph (the ones outside come from
+     * finished components), the successors only the ones inside.
+     */
+    static final class Component<N> implements DirectedGraph<N> {
+        private final DirectedGraph<N> graph;
+        final List<N> nodes = new ArrayList<>();
+        private final Set<N> members = new HashSet<>();
+        private final Map<N, List<N>> succs = new HashMap<>();
+        private final List<N> heads = new ArrayList<>();
+        private final List<N> tails = new ArrayList<>();
+
+        Component(DirectedGraph<N> graph) {
+            this.graph = graph;
+        }
+
+        private void close() {
+            members.addAll(nodes);
+            for (N n : nodes) {
+                List<N> inside = new ArrayList<>();
+                for (N s : graph.getSuccsOf(n)) {
+                    if (members.contains(s)) inside.add(s);
+                }
+                succs.put(n, inside);
+                if (inside.size() < graph.getSuccsOf(n).size() || inside.isEmpty()) tails.add(n);
+                boolean entry = graph.getPredsOf(n).isEmpty();
+                for (N p : graph.getPredsOf(n)) {
+                    if (!members.contains(p)) entry = true;
+                }
+                if (entry) heads.add(n);
+            }
+            // a component without an entry is unreachable, any node will do
+            if (heads.isEmpty()) heads.add(nodes.get(0));
+        }
+
+        @Override
+        public List<N> getHeads() {
+            return heads;
+        }
+
+        @Override
+        public List<N> getTails() {
+            return tails;
+        }
+
+        @Override
+        public List<N> getPredsOf(N n) {
+            return graph.getPredsOf(n);
+        }
+
+        @Override
+        public List<N> getSuccsOf(N n) {
+            return succs.get(n);
+        }
+
+        @Override
+        public int size() {
+            return nodes.size();
+        }
+
+        @Override
+        public Iterator<N> iterator() {
+            return nodes.iterator();
+        }
+    }
+
+    final List<Region<N>> regions = new ArrayList<>();
+
+    Regions(DirectedGraph<N> graph) {
+        List<Component<N>> order = components(graph);
+
+        Map<N, Component<N>> componentOf = new HashMap<>();
+        for (Component<N> c : order) {
+            for (N n : c.nodes) componentOf.put(n, c);
+        }
+        Map<Component<N>, Set<Component<N>>> predComponents = new HashMap<>();
+        Map<Component<N>, Set<Component<N>>> succComponents = new HashMap<>();
+        for (Component<N> c : order) {
+            predComponents.put(c, new LinkedHashSet<>());
+            succComponents.put(c, new LinkedHashSet<>());
+        }
+        for (N n : graph) {
+            Component<N> from = componentOf.get(n);
+            for (N s : graph.getSuccsOf(n)) {
+                Component<N> to = componentOf.get(s);
+                if (to == from) continue;
+                succComponents.get(from).add(to);
+                predComponents.get(to).add(from);
+            }
+        }
+
+        Map<Component<N>, Region<N>> regionOf = new HashMap<>();
+        for (Component<N> c : order) {
+            Set<Component<N>> preds = predComponents.get(c);
+            Region<N> r;
+            if (preds.size() == 1 && succComponents.get(preds.iterator().next()).size() == 1) {
+                r = regionOf.get(preds.iterator().next());
+            } else {
+                r = new Region<>();
+                for (Component<N> p : preds) {
+                    r.preds.add(regionOf.get(p));
+                    regionOf.get(p).succs.add(r);
+                }
+                regions.add(r);
+            }
+            r.components.add(c);
+            regionOf.put(c, r);
+        }
+    }
+
+    // Tarjan's algorithm without recursion, so that huge methods cannot overflow the stack;
+    // it finds components in reverse topological order
+    private static <N> List<Component<N>> components(DirectedGraph<N> graph) {
+        Map<N, Integer> index = new HashMap<>();
+        Map<N, Integer> low = new HashMap<>();
+        Deque<N> stack = new ArrayDeque<>();
+        Set<N> onStack = new HashSet<>();
+        List<Component<N>> found = new ArrayList<>();
+
+        for (N root : graph) {
+            if (index.containsKey(root)) continue;
+            // frames of the depth-first search: a node and the position of its next successor
+            Deque<N> nodes = new ArrayDeque<>();
+            Deque<Integer> next = new ArrayDeque<>();
+            index.put(root, index.size());
+            low.put(root, index.get(root));
+            stack.push(root);
+            onStack.add(root);
+            nodes.push(root);
+            next.push(0);
+
+            while (!nodes.isEmpty()) {
+                N n = nodes.peek();
+                int i = next.pop();
+                List<N> succs = graph.getSuccsOf(n);
+                if (i < succs.size()) {
+                    next.push(i + 1);
+                    N s = succs.get(i);
+                    if (!index.containsKey(s)) {
+                        index.put(s, index.size());
+                        low.put(s, index.get(s));
+                        stack.push(s);
+                        onStack.add(s);
+                        nodes.push(s);
+                        next.push(0);
+                    } else if (onStack.contains(s)) {
+                        low.put(n, Math.min(low.get(n), index.get(s)));
+                    }
+                    continue;
+                }
+
+                nodes.pop();
+                if (!nodes.isEmpty()) {
+                    N parent = nodes.peek();
+                    low.put(parent, Math.min(low.get(parent), low.get(n)));
+                }
+                if (low.get(n).equals(index.get(n))) {
+                    Component<N> c = new Component<>(graph);
+                    N m;
+                    do {
+                        m = stack.pop();
+                        onStack.remove(m);
+                        c.nodes.add(m);
+                    } while (m != n);
+                    Collections.reverse(c.nodes);
+                    c.close();
+                    found.add(c);
+                }
+            }
+        }
+        Collections.reverse(found);
+        return found;
+    }
+}
@@ -0,0 +1,195 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import soot.*;
+import soot.jimple.Stmt;
+
+/*
+ * On-disk cache of the redundant-load results of each method body, keyed by
+ * a hash of everything the results depend on: the analysis version, the
+ * jtp.dfa options that change results, the Jimple body with its locals and
+ * line numbers, and (with summaries) the side effects of every callee.
+ *
+ * File layout: magic, entry count, then the entries sorted by key
+ * (hi, lo, data offset, data length), then the UTF-8 results, one per line.
+ * The file is memory-mapped and looked up by binary search; new entries are
+ * kept in memory and merged into a fresh file by save().
+ */
+final class ResultCache {
+    // bump whenever a change to the analysis may change its results
+    static final String VERSION = "dfa-6";
+    // jtp.dfa options whose values are part of the key
+    static final String[] OPTIONS = {"summaries", "liveness", "gc", "delta"};
+
+    private static final int MAGIC = 0x44464331;
+    private static final int HEADER = 8;
+    private static final int ENTRY = 24;
+
+    static final class Key implements Comparable<Key> {
+        final long hi;
+        final long lo;
+
+        Key(long hi, long lo) {
+            this.hi = hi;
+            this.lo = lo;
+        }
+
+        @Override
+        public int compareTo(Key o) {
+            int c = Long.compare(hi, o.hi);
+            return c != 0 ? c : Long.compare(lo, o.lo);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).hi == hi && ((Key) o).lo == lo;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hi ^ lo);
+        }
+    }
+
+    private final Path file;
+    private final ByteBuffer mapped;   // null when there is no usable file
+    private final int count;
+    private final Map<Key, List<String>> added = new ConcurrentHashMap<>();
+
+    final AtomicInteger hits = new AtomicInteger();
+    final AtomicInteger misses = new AtomicInteger();
+
+    ResultCache(Path file) throws IOException {
+        this.file = file;
+        ByteBuffer buf = null;
+        if (Files.isRegularFile(file) && Files.size(file) >= HEADER) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            }
+            // a file of another format is ignored and replaced on save
+            if (buf.getInt(0) != MAGIC) buf = null;
+        }
+        mapped = buf;
+        count = buf == null ? 0 : buf.getInt(4);
+    }
+
+    // cached results of the body, null on a miss
+    List<String> get(Key key) {
+        List<String> results = added.get(key);
+        if (results == null) {
+            int i = find(key);
+            if (i >= 0) results = decode(i);
+        }
+        (results == null ? misses : hits).incrementAndGet();
+        return results;
+    }
+
+    void put(Key key, List<String> results) {
+        added.put(key, new ArrayList<>(results));
+    }
+
+    // writes the old and the new entries to a fresh file that replaces the old one
+    void save() throws IOException {
+        if (added.isEmpty()) return;
+        TreeMap<Key, byte[]> entries = new TreeMap<>();
+        for (int i = 0; i < count; i++) entries.put(keyAt(i), bytesAt(i));
+        for (Map.Entry<Key, List<String>> e : added.entrySet())
+            entries.put(e.getKey(), String.join("\n", e.getValue()).getBytes(StandardCharsets.UTF_8));
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            int offset = 0;
+            for (Map.Entry<Key, byte[]> e : entries.entrySet()) {
+                out.writeLong(e.getKey().hi);
+                out.writeLong(e.getKey().lo);
+                out.writeInt(offset);
+                out.writeInt(e.getValue().length);
+                offset += e.getValue().length;
+            }
+            for (byte[] data : entries.values()) out.write(data);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private int find(Key key) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = keyAt(mid).compareTo(key);
+            if (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private Key keyAt(int i) {
+        int at = HEADER + i * ENTRY;
+        return new Key(mapped.getLong(at), mapped.getLong(at + 8));
+    }
+
+    // absolute reads only, so concurrent lookups need no locking
+    private byte[] bytesAt(int i) {
+        int at = HEADER + i * ENTRY;
+        int offset = HEADER + count * ENTRY + mapped.getInt(at + 16);
+        byte[] data = new byte[mapped.getInt(at + 20)];
+        for (int k = 0; k < data.length; k++) data[k] = mapped.get(offset + k);
+        return data;
+    }
+
+    private List<String> decode(int i) {
+        byte[] data = bytesAt(i);
+        if (data.length == 0) return Collections.emptyList();
+        return Arrays.asList(new String(data, StandardCharsets.UTF_8).split("\n"));
+    }
+
+    // summaries are only read when the summaries option is set
+    static Key key(Body body, Map<String, String> options, Summaries summaries) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(VERSION);
+        for (String option : OPTIONS) sb.append(' ').append(option).append(':').append(PhaseOptions.getBoolean(options, option));
+        sb.append('\n');
+        if (!PhaseOptions.getBoolean(options, "summaries")) summaries = null;
+        sb.append(body.getMethod().getSignature()).append('\n');
+        for (Local l : body.getLocals()) sb.append(l.getType()).append(' ').append(l.getName()).append('\n');
+        for (Unit u : body.getUnits()) {
+            sb.append(u.getJavaSourceStartLineNumber()).append(' ').append(u).append('\n');
+            if (summaries != null && ((Stmt) u).containsInvokeExpr())
+                appendSummary(sb, summaries.of(((Stmt) u).getInvokeExpr()));
+        }
+        byte[] h = md.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+        ByteBuffer b = ByteBuffer.wrap(h);
+        return new Key(b.getLong(), b.getLong());
+    }
+
+    private static void appendSummary(StringBuilder sb, Summaries.Summary s) {
+        if (s.unknown()) {
+            sb.append("  writes ?\n");
+            return;
+        }
+        List<String> written = new ArrayList<>();
+        for (SootField f : s.fields) written.add(f.getSignature());
+        for (SootField f : s.statics) written.add("static " + f.getSignature());
+        Collections.sort(written);
+        sb.append("  writes ").append(written).append('\n');
+        sb.append("  returns ").append(new TreeSet<>(s.returns)).append(s.other ? " other" : "").append('\n');
+    }
+}
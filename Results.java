@@ -0,0 +1,144 @@
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/*
+ * Where the redundant loads go. By default they are held until flush() and
+ * printed grouped by "Class:method" in name order, each group ordered by line.
+ * In streaming mode each method's loads are printed as soon as the method has
+ * been analysed, so nothing is held, but methods come in analysis order.
+ * Either way the format is the text report or one JSON object per line.
+ * A method the analysis gave up on (see AnalysisTransformer.Budget) gets a
+ * "skipped: <reason>" line, or a JSON object with a "skipped" member.
+ */
+final class Results {
+
+    // x = base.field at line, where replacement already holds the loaded value
+    static final class Result {
+        final String cls;
+        final String method;
+        final int line;
+        final String base;
+        final String field;         // field signature, <Class: Type name>
+        final String replacement;
+
+        Result(String cls, String method, int line, String base, String field, String replacement) {
+            this.cls = cls;
+            this.method = method;
+            this.line = line;
+            this.base = base;
+            this.field = field;
+            this.replacement = replacement;
+        }
+
+        // inverse of text(), for results read back from a ResultCache
+        static Result parse(String cls, String method, String text) {
+            int colon = text.indexOf(':');
+            int dot = text.indexOf(".<", colon);
+            int space = text.lastIndexOf(' ');
+            return new Result(cls, method, Integer.parseInt(text.substring(0, colon)),
+                text.substring(colon + 1, dot), text.substring(dot + 1, space), text.substring(space + 1));
+        }
+
+        // line of the text report: 12:r1.<Test: Test f> r2
+        String text() {
+            return line + ":" + base + "." + field + " " + replacement;
+        }
+
+        String json(String target) {
+            return "{\"target\": " + Metrics.json(target)
+                + ", \"class\": " + Metrics.json(cls) + ", \"method\": " + Metrics.json(method)
+                + ", \"line\": " + line + ", \"base\": " + Metrics.json(base)
+                + ", \"field\": " + Metrics.json(field) + ", \"replacement\": " + Metrics.json(replacement) + "}";
+        }
+    }
+
+    private static final Comparator<Result> BY_LINE = (a, b) -> Integer.compare(a.line, b.line);
+
+    private final PrintStream out;
+    private final boolean stream;
+    private final boolean json;
+    // results held for flush() in sorted mode, filled by several Soot threads
+    private final ConcurrentMap<String, List<Result>> held = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, String> skipped = new ConcurrentSkipListMap<>();
+    // set along with Metrics.target
+    volatile String target = "";
+
+    Results(PrintStream out, boolean stream, boolean json) {
+        this.out = out;
+        this.stream = stream;
+        this.json = json;
+    }
+
+    // the loads of one analysed method
+    void add(String cls, String method, List<Result> results) {
+        if (results.isEmpty()) return;
+        String key = cls + ":" + method;
+        if (!stream) {
+            held.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>())).addAll(results);
+            return;
+        }
+        List<Result> sorted = new ArrayList<>(results);
+        sorted.sort(BY_LINE);
+        synchronized (out) {
+            print(key, sorted);
+        }
+    }
+
+    // a method whose analysis stopped before the fixpoint, so none of its loads are reported
+    void skip(String cls, String method, String reason) {
+        String key = cls + ":" + method;
+        if (!stream) {
+            skipped.merge(key, reason, (a, b) -> a + "; " + b);
+            return;
+        }
+        synchronized (out) {
+            printSkip(key, cls, method, reason);
+        }
+    }
+
+    // prints what sorted mode held back; nothing to do when streaming
+    void flush() {
+        Set<String> keys = new TreeSet<>(held.keySet());
+        keys.addAll(skipped.keySet());
+        for (String key : keys) {
+            List<Result> sorted = held.get(key);
+            if (sorted != null) {
+                sorted.sort(BY_LINE);
+                print(key, sorted);
+            }
+            String reason = skipped.get(key);
+            if (reason != null) {
+                int colon = key.indexOf(':');
+                printSkip(key, key.substring(0, colon), key.substring(colon + 1), reason);
+            }
+        }
+        clear();
+        out.flush();
+    }
+
+    void clear() {
+        held.clear();
+        skipped.clear();
+    }
+
+    private void print(String key, List<Result> results) {
+        if (json) {
+            for (Result r : results) out.println(r.json(target));
+            return;
+        }
+        out.println(key);
+        for (Result r : results) out.println(r.text());
+    }
+
+    private void printSkip(String key, String cls, String method, String reason) {
+        if (json) {
+            out.println("{\"target\": " + Metrics.json(target) + ", \"class\": " + Metrics.json(cls)
+                + ", \"method\": " + Metrics.json(method) + ", \"skipped\": " + Metrics.json(reason) + "}");
+            return;
+        }
+        out.println(key);
+        out.println("skipped: " + reason);
+    }
+}
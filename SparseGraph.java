@@ -0,0 +1,89 @@
+import java.util.*;
+import java.util.function.Predicate;
+import soot.Unit;
+import soot.toolkits.graph.DirectedGraph;
+import soot.toolkits.graph.UnitGraph;
+
+/*
+ * Reduced CFG over the units selected by a predicate (the statements whose
+ * transfer function is not the identity). There is an edge r -> s when s is
+ * reachable from r through unselected units only, so facts flowing along the
+ * full graph reach exactly the same nodes. Nodes keep chain order.
+ */
+final class SparseGraph implements DirectedGraph<Unit> {
+
+    private final Map<Unit, List<Unit>> succs = new LinkedHashMap<>();
+    private final Map<Unit, List<Unit>> preds = new HashMap<>();
+    private final List<Unit> heads = new ArrayList<>();
+    private final List<Unit> tails = new ArrayList<>();
+
+    SparseGraph(UnitGraph graph, Predicate<Unit> keep) {
+        for (Unit u : graph) {
+            if (keep.test(u)) {
+                succs.put(u, new ArrayList<>());
+                preds.put(u, new ArrayList<>());
+            }
+        }
+
+        for (Unit u : succs.keySet()) {
+            for (Unit s : reach(graph, graph.getSuccsOf(u))) {
+                succs.get(u).add(s);
+                preds.get(s).add(u);
+            }
+        }
+
+        Set<Unit> entry = new HashSet<>(reach(graph, graph.getHeads()));
+        for (Unit u : succs.keySet()) {
+            if (entry.contains(u) || preds.get(u).isEmpty()) heads.add(u);
+            if (succs.get(u).isEmpty()) tails.add(u);
+        }
+    }
+
+    // first kept units reachable from the given units through unkept units
+    private List<Unit> reach(UnitGraph graph, List<Unit> from) {
+        List<Unit> found = new ArrayList<>();
+        Set<Unit> seen = new HashSet<>();
+        Deque<Unit> stack = new ArrayDeque<>(from);
+
+        while (!stack.isEmpty()) {
+            Unit u = stack.pop();
+            if (!seen.add(u)) continue;
+            if (succs.containsKey(u)) {
+                found.add(u);
+            } else {
+                stack.addAll(graph.getSuccsOf(u));
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public List<Unit> getHeads() {
+        return heads;
+    }
+
+    @Override
+    public List<Unit> getTails() {
+        return tails;
+    }
+
+    @Override
+    public List<Unit> getPredsOf(Unit s) {
+        return preds.get(s);
+    }
+
+    @Override
+    public List<Unit> getSuccsOf(Unit s) {
+        return succs.get(s);
+    }
+
+    @Override
+    public int size() {
+        return succs.size();
+    }
+
+    @Override
+    public Iterator<Unit> iterator() {
+        return succs.keySet().iterator();
+    }
+}
@@ -0,0 +1,264 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import soot.*;
+import soot.jimple.*;
+
+/*
+ * Bottom-up side-effect summaries: the instance and static fields a method
+ * may write, directly or through the methods it calls, and what it may
+ * return. Callees are resolved by class hierarchy analysis, the methods of a
+ * strongly connected component of the call graph share their writes, and
+ * every summary is cached per SootMethod. Anything that reaches a method
+ * without an analysable body (library, phantom or native code) gets the
+ * UNKNOWN summary.
+ *
+ * Returns are not followed into callees: a method returns its parameters
+ * (or this) when the returned local is one of them or a copy of one, and
+ * anything else, including the result of a call, counts as other.
+ */
+final class Summaries {
+
+    static final class Summary {
+        static final Summary UNKNOWN = new Summary(null, null, Collections.emptySet(), true);
+        static final Summary NONE = new Summary(Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), false);
+
+        // null when unknown
+        final Set<SootField> fields;
+        final Set<SootField> statics;
+        // indices of the parameters the method may return, -1 standing for this
+        final Set<Integer> returns;
+        // whether it may return anything else
+        final boolean other;
+
+        Summary(Set<SootField> fields, Set<SootField> statics, Set<Integer> returns, boolean other) {
+            this.fields = fields;
+            this.statics = statics;
+            this.returns = returns;
+            this.other = other;
+        }
+
+        boolean unknown() {
+            return fields == null;
+        }
+
+        // writes nothing and returns nothing
+        boolean empty() {
+            return !unknown() && fields.isEmpty() && statics.isEmpty() && returns.isEmpty() && !other;
+        }
+
+        // the effect of a call that may dispatch to either method
+        Summary union(Summary o) {
+            if (unknown() || o.unknown()) return UNKNOWN;
+            if (o.empty()) return this;
+            if (empty()) return o;
+            Set<SootField> f = new HashSet<>(fields);
+            Set<SootField> s = new HashSet<>(statics);
+            Set<Integer> r = new HashSet<>(returns);
+            f.addAll(o.fields);
+            s.addAll(o.statics);
+            r.addAll(o.returns);
+            return new Summary(f, s, r, other || o.other);
+        }
+    }
+
+    static final String OBJECT_INIT = "<java.lang.Object: void <init>()>";
+
+    private final Map<SootMethod, Summary> cache = new ConcurrentHashMap<>();
+    private volatile boolean complete;
+
+    // effect of a call site: the union over every method it may dispatch to
+    Summary of(InvokeExpr ie) {
+        Summary s = Summary.NONE;
+        for (SootMethod m : targets(ie)) {
+            if (m == null) return Summary.UNKNOWN;
+            s = s.union(of(m));
+            if (s.unknown()) break;
+        }
+        return s;
+    }
+
+    Summary of(SootMethod m) {
+        if (!analysable(m)) return Summary.UNKNOWN;
+        Summary s = cache.get(m);
+        if (s == null) {
+            new Tarjan().visit(m);
+            s = cache.get(m);
+        }
+        return s;
+    }
+
+    /*
+     * Summarises every application method. Called by each body transformation
+     * before it analyses its body, so the first call does it while every body
+     * is still Jimple: Soot retrieves all bodies before the body packs, and
+     * with -f c turns a class into Baf only after the transformation of its
+     * bodies, which waits here. No body is read later, so the rewrite option
+     * can edit bodies while other threads analyse theirs.
+     */
+    void summariseAll() {
+        if (complete) return;
+        synchronized (this) {
+            if (complete) return;
+            for (SootClass c : Scene.v().getApplicationClasses()) {
+                for (SootMethod m : new ArrayList<>(c.getMethods())) {
+                    if (analysable(m)) of(m);
+                }
+            }
+            complete = true;
+        }
+    }
+
+    // summaries hold SootMethods, so they must not outlive a Soot reset
+    void clear() {
+        cache.clear();
+        complete = false;
+    }
+
+    // a null element stands for a target that cannot be resolved
+    static Collection<SootMethod> targets(InvokeExpr ie) {
+        SootMethod m;
+        try {
+            m = ie.getMethod();
+        } catch (RuntimeException e) {
+            return Collections.singleton(null);
+        }
+        if (!m.getDeclaringClass().isApplicationClass()) return Collections.singleton(null);
+        if (ie instanceof StaticInvokeExpr || ie instanceof SpecialInvokeExpr) return Collections.singleton(m);
+        return Scene.v().getOrMakeFastHierarchy().resolveAbstractDispatch(m.getDeclaringClass(), m);
+    }
+
+    static boolean analysable(SootMethod m) {
+        return m.isConcrete() && !m.isPhantom() && m.getDeclaringClass().isApplicationClass();
+    }
+
+    // writes of one method body, without its callees
+    private static final class Direct {
+        final Set<SootField> fields = new HashSet<>();
+        final Set<SootField> statics = new HashSet<>();
+        final Set<SootMethod> callees = new LinkedHashSet<>();
+        final Set<Integer> returns = new HashSet<>();
+        boolean other;
+        boolean unknown;
+
+        Direct(SootMethod m) {
+            Body body;
+            try {
+                body = m.retrieveActiveBody();
+            } catch (RuntimeException e) {
+                unknown = true;
+                return;
+            }
+            for (Unit u : body.getUnits()) {
+                Stmt s = (Stmt) u;
+                if (s instanceof AssignStmt) {
+                    Value lhs = ((AssignStmt) s).getLeftOp();
+                    if (lhs instanceof InstanceFieldRef) fields.add(((InstanceFieldRef) lhs).getField());
+                    else if (lhs instanceof StaticFieldRef) statics.add(((StaticFieldRef) lhs).getField());
+                }
+                // constructors are callees like any other, what they write reaches the callers of m;
+                // only Object's, which every constructor calls and which writes nothing, is left out
+                if (s.containsInvokeExpr() && !s.getInvokeExpr().getMethod().getSignature().equals(OBJECT_INIT)) {
+                    for (SootMethod c : targets(s.getInvokeExpr())) {
+                        if (c == null || !analysable(c)) unknown = true;
+                        else callees.add(c);
+                    }
+                }
+                if (unknown) return;
+            }
+            if (m.getReturnType() instanceof RefLikeType) returns(body);
+        }
+
+        private void returns(Body body) {
+            Map<Local, List<Value>> defs = new HashMap<>();
+            for (Unit u : body.getUnits()) {
+                if (u instanceof DefinitionStmt && ((DefinitionStmt) u).getLeftOp() instanceof Local) {
+                    defs.computeIfAbsent((Local) ((DefinitionStmt) u).getLeftOp(), k -> new ArrayList<>())
+                        .add(((DefinitionStmt) u).getRightOp());
+                }
+            }
+            Set<Local> seen = new HashSet<>();
+            for (Unit u : body.getUnits()) {
+                if (u instanceof ReturnStmt) returned(((ReturnStmt) u).getOp(), defs, seen);
+            }
+        }
+
+        // follows copies back to the parameters v may hold, flow-insensitively
+        private void returned(Value v, Map<Local, List<Value>> defs, Set<Local> seen) {
+            if (v instanceof NullConstant) return;
+            if (!(v instanceof Local)) {
+                other = true;
+                return;
+            }
+            if (!seen.add((Local) v)) return;
+            for (Value d : defs.getOrDefault(v, Collections.emptyList())) {
+                if (d instanceof ParameterRef) returns.add(((ParameterRef) d).getIndex());
+                else if (d instanceof ThisRef) returns.add(-1);
+                else if (d instanceof Local) returned(d, defs, seen);
+                else other = true;
+            }
+        }
+    }
+
+    private final class Tarjan {
+        private final Map<SootMethod, Integer> index = new HashMap<>();
+        private final Map<SootMethod, Integer> low = new HashMap<>();
+        private final Map<SootMethod, Direct> direct = new HashMap<>();
+        private final Deque<SootMethod> stack = new ArrayDeque<>();
+        private final Set<SootMethod> onStack = new HashSet<>();
+
+        void visit(SootMethod m) {
+            index.put(m, index.size());
+            low.put(m, index.get(m));
+            stack.push(m);
+            onStack.add(m);
+
+            Direct d = new Direct(m);
+            direct.put(m, d);
+
+            for (SootMethod c : d.callees) {
+                if (cache.containsKey(c)) continue;
+                if (!index.containsKey(c)) {
+                    visit(c);
+                    low.put(m, Math.min(low.get(m), low.get(c)));
+                } else if (onStack.contains(c)) {
+                    low.put(m, Math.min(low.get(m), index.get(c)));
+                }
+            }
+
+            if (!low.get(m).equals(index.get(m))) return;
+
+            Set<SootMethod> scc = new LinkedHashSet<>();
+            SootMethod n;
+            do {
+                n = stack.pop();
+                onStack.remove(n);
+                scc.add(n);
+            } while (n != m);
+
+            // the component shares its writes, returns stay per method
+            Set<SootField> fields = new HashSet<>();
+            Set<SootField> statics = new HashSet<>();
+            boolean unknown = false;
+            for (SootMethod member : scc) {
+                Direct dm = direct.get(member);
+                unknown |= dm.unknown;
+                fields.addAll(dm.fields);
+                statics.addAll(dm.statics);
+                // callees outside the component are already summarised
+                for (SootMethod c : dm.callees) {
+                    if (scc.contains(c)) continue;
+                    Summary cs = cache.get(c);
+                    unknown |= cs.unknown();
+                    if (cs.unknown()) break;
+                    fields.addAll(cs.fields);
+                    statics.addAll(cs.statics);
+                }
+                if (unknown) break;
+            }
+            for (SootMethod member : scc) {
+                Direct dm = direct.get(member);
+                cache.putIfAbsent(member, unknown ? Summary.UNKNOWN : new Summary(fields, statics, dm.returns, dm.other));
+            }
+        }
+    }
+}
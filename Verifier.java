@@ -0,0 +1,53 @@
+import java.io.*;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.*;
+import java.util.*;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.util.CheckClassAdapter;
+import soot.SootClass;
+import soot.SourceLocator;
+
+/*
+ * Checks the class files Soot wrote with -f c: every class must be there,
+ * pass ASM's bytecode verifier (type-checked against the original classpath)
+ * and load in a fresh class loader.
+ */
+final class Verifier {
+
+    private Verifier() {
+    }
+
+    // one message per broken class, empty when all of them are fine
+    static List<String> verify(Collection<SootClass> classes, String classpath) throws IOException {
+        List<String> problems = new ArrayList<>();
+        Path out = Paths.get(SourceLocator.v().getOutputDir());
+        URL[] urls = { out.toUri().toURL(), Paths.get(classpath).toUri().toURL() };
+
+        try (URLClassLoader loader = new URLClassLoader(urls, ClassLoader.getSystemClassLoader().getParent())) {
+            for (SootClass c : classes) {
+                Path file = out.resolve(c.getName().replace('.', '/') + ".class");
+                if (!Files.isRegularFile(file)) {
+                    problems.add(c.getName() + ": no class file at " + file);
+                    continue;
+                }
+
+                StringWriter errors = new StringWriter();
+                CheckClassAdapter.verify(new ClassReader(Files.readAllBytes(file)), loader, false,
+                    new PrintWriter(errors));
+                if (errors.getBuffer().length() > 0) {
+                    // the first line names the failing instruction, the rest is a stack trace
+                    problems.add(c.getName() + ": " + errors.toString().trim().split("\n")[0]);
+                    continue;
+                }
+
+                try {
+                    Class.forName(c.getName(), false, loader);
+                } catch (ClassNotFoundException | LinkageError e) {
+                    problems.add(c.getName() + ": " + e);
+                }
+            }
+        }
+        return problems;
+    }
+}
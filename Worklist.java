@@ -0,0 +1,48 @@
+import java.util.*;
+import soot.toolkits.graph.DirectedGraph;
+import soot.toolkits.graph.PseudoTopologicalOrderer;
+
+/*
+ * Worklist for forward dataflow over a graph: nodes are handed out by their
+ * reverse post-order position (so loop heads come before their bodies), and
+ * a node that is already pending is not queued a second time.
+ */
+final class Worklist<N> {
+
+    private final List<N> order;
+    private final Map<N, Integer> rpo;
+    private final BitSet pending;
+
+    int iterations;
+
+    Worklist(DirectedGraph<N> graph) {
+        order = new PseudoTopologicalOrderer<N>().newList(graph, false);
+        rpo = new HashMap<>(order.size() * 2);
+        for (int i = 0; i < order.size(); i++) rpo.put(order.get(i), i);
+        pending = new BitSet(order.size());
+    }
+
+    // seeds every node of the graph
+    void addAll() {
+        pending.set(0, order.size());
+    }
+
+    void add(N n) {
+        pending.set(rpo.get(n));
+    }
+
+    boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    N poll() {
+        int i = pending.nextSetBit(0);
+        pending.clear(i);
+        iterations++;
+        return order.get(i);
+    }
+
+    int size() {
+        return order.size();
+    }
+}
@@ -0,0 +1,20 @@
+#!/bin/sh
+# Runtime of the testcases and bench/programs before and after PA2 -rewrite,
+# as a markdown table in bench/results/programs-<git version>.md.
+#   SOOT_CP  classpath of soot and its dependencies
+#   JMH_CP   jmh-core, jmh-generator-annprocess, jopt-simple and commons-math3
+# Arguments go to bench.ProgramTable: source dirs, then JMH options after --.
+#   bench/programs.sh
+#   bench/programs.sh testcases/Test1 bench/programs/HotLoop -- -wi 1 -i 3
+set -e
+cd "$(dirname "$0")/.."
+: "${SOOT_CP:?set SOOT_CP to the soot classpath}"
+: "${JMH_CP:?set JMH_CP to the JMH classpath}"
+
+out=bench/target/classes
+rm -rf "$out"
+mkdir -p "$out"
+javac -nowarn -cp "$SOOT_CP:$JMH_CP" -d "$out" *.java bench/src/*.java bench/src/bench/*.java
+
+version=$(git describe --always --dirty 2>/dev/null || echo dev)
+exec java -cp "$out:$SOOT_CP:$JMH_CP" bench.ProgramTable -version "$version" "$@"
@@ -0,0 +1,23 @@
+class Node {
+    Node next;
+    int val;
+}
+
+// the loads of head.next and n.val inside the loop repeat the ones before it
+public class Test {
+    public static void main(String[] args) {
+        Node head = new Node();
+        Node tail = new Node();
+        head.next = tail;
+        tail.val = 3;
+
+        Node first = head.next;
+        int v = first.val;
+        long sum = 0;
+        for (int i = 0; i < 100000; i++) {
+            Node n = head.next;
+            sum += n.val + i;
+        }
+        if (sum == v) System.out.println(sum);
+    }
+}
@@ -0,0 +1,25 @@
+class Box {
+    Box left;
+    Box right;
+}
+
+// both inner-loop loads are available in l and r
+public class Test {
+    public static void main(String[] args) {
+        Box root = new Box();
+        root.left = new Box();
+        root.right = new Box();
+
+        Box l = root.left;
+        Box r = root.right;
+        int total = 0;
+        for (int i = 0; i < 300; i++) {
+            for (int j = 0; j < 300; j++) {
+                Box a = root.left;
+                Box b = root.right;
+                if (a != b) total += j;
+            }
+        }
+        if (total == 42 && l != r) System.out.println(total);
+    }
+}
@@ -0,0 +1,20 @@
+#!/bin/sh
+# Builds and runs the JMH benchmarks of the dataflow engine (bench/src).
+#   SOOT_CP  classpath of soot and its dependencies
+#   JMH_CP   jmh-core, jmh-generator-annprocess, jopt-simple and commons-math3
+# Arguments go to JMH; without any, every benchmark runs with the GC profiler.
+#   bench/run.sh
+#   bench/run.sh DfaBenchmark.joinIn -p source=Test1,Test7 -prof gc
+#   bench/run.sh DfaBenchmark.internalTransform -p units=1000,10000 -p loopDepth=0,3
+set -e
+cd "$(dirname "$0")/.."
+: "${SOOT_CP:?set SOOT_CP to the soot classpath}"
+: "${JMH_CP:?set JMH_CP to the JMH classpath}"
+
+out=bench/target/classes
+rm -rf "$out"
+mkdir -p "$out"
+javac -nowarn -cp "$SOOT_CP:$JMH_CP" -d "$out" *.java bench/src/*.java bench/src/bench/*.java
+
+[ $# -eq 0 ] && set -- -prof gc
+exec java -cp "$out:$SOOT_CP:$JMH_CP" org.openjdk.jmh.Main "$@"
@@ -0,0 +1,74 @@
+import java.util.*;
+import soot.*;
+import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.graph.UnitGraph;
+
+// bench.Engine on top of AnalysisTransformer, see bench/src/bench/Engine.java
+public class DfaEngine implements bench.Engine {
+
+    private final AnalysisTransformer dfa = new AnalysisTransformer();
+    private final Map<String, String> options = new HashMap<>();
+
+    private UnitGraph graph;
+    private AnalysisTransformer.Sites sites;
+    private Map<Unit, AnalysisTransformer.State> IN;
+    private Map<Unit, AnalysisTransformer.State> OUT;
+
+    public DfaEngine() {
+        for (String opt : AnalysisTransformer.DEFAULT_OPTIONS.split(" ")) {
+            String[] kv = opt.split(":");
+            options.put(kv[0], kv[1]);
+        }
+    }
+
+    @Override
+    public void transform(Body body) {
+        dfa.internalTransform(body, "jtp.dfa", options);
+        dfa.results.clear();
+    }
+
+    @Override
+    public void prepare(Body body) {
+        graph = new BriefUnitGraph(body);
+        sites = new AnalysisTransformer.Sites(body);
+        IN = new HashMap<>();
+        OUT = new HashMap<>();
+        for (Unit u : graph) {
+            IN.put(u, dfa.new State(sites));
+            OUT.put(u, dfa.new State(sites));
+        }
+        Worklist<Unit> worklist = new Worklist<>(graph);
+        worklist.addAll();
+        dfa.solve(graph, sites, IN, OUT, worklist);
+    }
+
+    @Override
+    public int dataFlowAll() {
+        int n = 0;
+        for (Unit u : graph) {
+            n += dfa.dataFlow(u, IN.get(u)).stack.size();
+        }
+        return n;
+    }
+
+    @Override
+    public int joinAll() {
+        int n = 0;
+        for (Unit u : graph) {
+            AnalysisTransformer.State in = dfa.new State(sites);
+            for (Unit pre : graph.getPredsOf(u)) {
+                if (dfa.joinIn(in, OUT.get(pre))) n++;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public int copyAll() {
+        int n = 0;
+        for (Unit u : graph) {
+            n += IN.get(u).copy().heap.size();
+        }
+        return n;
+    }
+}
@@ -0,0 +1,142 @@
+package bench;
+
+import java.util.*;
+import soot.*;
+import soot.jimple.*;
+import soot.options.Options;
+
+/*
+ * Jimple bodies to benchmark: synthetic ones of controllable shape, or the
+ * largest method of one of the testcases/TestN directories.
+ * Both reset Soot, so only one body is alive per benchmark trial.
+ */
+public final class Bodies {
+
+    private Bodies() {
+    }
+
+    public static Body testcase(String dir) {
+        G.reset();
+        Options.v().set_soot_classpath(dir);
+        Options.v().set_process_dir(Collections.singletonList(dir));
+        Options.v().set_prepend_classpath(true);
+        Options.v().set_allow_phantom_refs(true);
+        Options.v().set_keep_line_number(true);
+        Scene.v().loadNecessaryClasses();
+
+        Body largest = null;
+        for (SootClass c : Scene.v().getApplicationClasses()) {
+            for (SootMethod m : c.getMethods()) {
+                if (!m.isConcrete()) continue;
+                Body b = m.retrieveActiveBody();
+                if (largest == null || b.getUnits().size() > largest.getUnits().size()) largest = b;
+            }
+        }
+        if (largest == null) throw new IllegalArgumentException("no method bodies in " + dir);
+        return largest;
+    }
+
+    /*
+     * A static method of about `units` statements over `fields` reference
+     * fields with `sites` allocation statements, the whole sequence wrapped in
+     * `loopDepth` nested loops, and `callPercent` percent of the remaining
+     * statements being calls. The same seed gives the same body.
+     */
+    public static Body synthetic(int units, int sites, int fields, int loopDepth, int callPercent, long seed) {
+        G.reset();
+        Options.v().set_prepend_classpath(true);
+        Options.v().set_allow_phantom_refs(true);
+        Scene.v().loadNecessaryClasses();
+
+        Jimple j = Jimple.v();
+        Random rnd = new Random(seed);
+
+        SootClass cls = new SootClass("Synth", Modifier.PUBLIC);
+        cls.setSuperclass(Scene.v().getSootClass("java.lang.Object"));
+        Scene.v().addClass(cls);
+        cls.setApplicationClass();
+        RefType type = cls.getType();
+
+        List<SootField> fs = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, fields); i++) {
+            SootField f = new SootField("f" + i, type);
+            cls.addField(f);
+            fs.add(f);
+        }
+
+        SootMethod sink = new SootMethod("sink", Collections.singletonList(type), VoidType.v(),
+            Modifier.PUBLIC | Modifier.STATIC);
+        cls.addMethod(sink);
+        JimpleBody sinkBody = j.newBody(sink);
+        sinkBody.getUnits().add(j.newReturnVoidStmt());
+        sink.setActiveBody(sinkBody);
+
+        SootMethod run = new SootMethod("run", Collections.emptyList(), VoidType.v(),
+            Modifier.PUBLIC | Modifier.STATIC);
+        cls.addMethod(run);
+        JimpleBody body = j.newBody(run);
+        run.setActiveBody(body);
+
+        // named locals are replacement candidates, $-locals are temporaries
+        List<Local> locals = new ArrayList<>();
+        for (int i = 0; i < Math.max(4, sites); i++) {
+            Local l = j.newLocal((i % 2 == 0 ? "r" : "$r") + i, type);
+            body.getLocals().add(l);
+            locals.add(l);
+        }
+
+        List<Unit> stmts = new ArrayList<>();
+        int allocations = 0;
+        for (int i = 0; i < units; i++) {
+            Local x = locals.get(rnd.nextInt(locals.size()));
+            Local y = locals.get(rnd.nextInt(locals.size()));
+            SootField f = fs.get(rnd.nextInt(fs.size()));
+
+            // allocations are spread evenly, the first one comes first so loads see objects
+            if (allocations < sites && (long) i * sites >= (long) allocations * units) {
+                stmts.add(j.newAssignStmt(x, j.newNewExpr(type)));
+                allocations++;
+            } else if (rnd.nextInt(100) < callPercent) {
+                stmts.add(j.newInvokeStmt(j.newStaticInvokeExpr(sink.makeRef(), y)));
+            } else {
+                switch (rnd.nextInt(3)) {
+                    case 0:
+                        stmts.add(j.newAssignStmt(x, y));
+                        break;
+                    case 1:
+                        stmts.add(j.newAssignStmt(x, j.newInstanceFieldRef(y, f.makeRef())));
+                        break;
+                    default:
+                        stmts.add(j.newAssignStmt(j.newInstanceFieldRef(x, f.makeRef()), y));
+                        break;
+                }
+            }
+        }
+
+        // loop k runs over stmts[k * step, size - k * step)
+        Local counter = j.newLocal("i", IntType.v());
+        body.getLocals().add(counter);
+        int step = stmts.size() / (2 * Math.max(1, loopDepth) + 1);
+        for (int k = loopDepth - 1; k >= 0; k--) {
+            int from = k * step;
+            int to = stmts.size() - k * step;
+            Unit exit = to < stmts.size() ? stmts.get(to) : null;
+            Unit head = stmts.get(from);
+            Unit test = j.newIfStmt(j.newGeExpr(counter, IntConstant.v(10)), head);
+            Unit back = j.newGotoStmt(test);
+            stmts.add(to, back);
+            stmts.add(from, test);
+            if (exit == null) {
+                Unit ret = j.newReturnVoidStmt();
+                stmts.add(ret);
+                exit = ret;
+            }
+            ((IfStmt) test).setTarget(exit);
+        }
+
+        body.getUnits().addAll(stmts);
+        if (!(body.getUnits().getLast() instanceof ReturnVoidStmt))
+            body.getUnits().add(j.newReturnVoidStmt());
+        return body;
+    }
+}
@@ -0,0 +1,175 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import javax.tools.ToolProvider;
+
+/*
+ * Generator of synthetic Test programs for scalability sweeps. Unlike
+ * Bodies.synthetic, which builds one Jimple body in memory, this writes Java
+ * source that goes through javac and the whole PA2 pipeline. The programs
+ * are only analysed, never run. The same shape gives the same program.
+ */
+public final class Corpus {
+
+    public static final class Shape {
+        public int methods = 4;        // static methods m0..m(n-1), each taking a Test
+        public int statements = 200;   // per method, not counting loop and switch headers
+        public int locals = 8;         // Test locals per method
+        public int sites = 20;         // allocation statements per method
+        public int fields = 4;         // Test fields f0..f(n-1)
+        public int loopDepth = 1;      // nested loops around the middle of each method
+        public int fanIn = 2;          // cases of the switches that merge control flow
+        public int callPercent = 5;    // statements that call a later method
+        public long seed = 42;
+
+        public static final List<String> KEYS = Arrays.asList(
+            "methods", "statements", "locals", "sites", "fields", "loopDepth", "fanIn", "callPercent", "seed");
+
+        public void set(String key, long value) {
+            switch (key) {
+                case "methods": methods = (int) value; break;
+                case "statements": statements = (int) value; break;
+                case "locals": locals = (int) value; break;
+                case "sites": sites = (int) value; break;
+                case "fields": fields = (int) value; break;
+                case "loopDepth": loopDepth = (int) value; break;
+                case "fanIn": fanIn = (int) value; break;
+                case "callPercent": callPercent = (int) value; break;
+                case "seed": seed = value; break;
+                default: throw new IllegalArgumentException("unknown shape parameter " + key + ", expected one of " + KEYS);
+            }
+        }
+
+        public Shape copy() {
+            Shape c = new Shape();
+            for (String key : KEYS) c.set(key, get(key));
+            return c;
+        }
+
+        public long get(String key) {
+            switch (key) {
+                case "methods": return methods;
+                case "statements": return statements;
+                case "locals": return locals;
+                case "sites": return sites;
+                case "fields": return fields;
+                case "loopDepth": return loopDepth;
+                case "fanIn": return fanIn;
+                case "callPercent": return callPercent;
+                case "seed": return seed;
+                default: throw new IllegalArgumentException("unknown shape parameter " + key + ", expected one of " + KEYS);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "methods=" + methods + " statements=" + statements + " locals=" + locals + " sites=" + sites
+                + " fields=" + fields + " loopDepth=" + loopDepth + " fanIn=" + fanIn
+                + " callPercent=" + callPercent + " seed=" + seed;
+        }
+    }
+
+    private Corpus() {
+    }
+
+    // writes dir/Test.java for the shape and compiles it into dir
+    public static void write(Shape shape, Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve("Test.java");
+        Files.write(file, source(shape).getBytes("UTF-8"));
+        int status = ToolProvider.getSystemJavaCompiler().run(null, null, null,
+            "--release", "8", "-nowarn", "-d", dir.toString(), file.toString());
+        if (status != 0) throw new IOException("cannot compile " + file);
+    }
+
+    public static String source(Shape shape) {
+        Random rnd = new Random(shape.seed);
+        StringBuilder sb = new StringBuilder();
+        sb.append("// generated by bench.Corpus: ").append(shape).append("\n");
+        sb.append("public class Test {\n");
+        for (int f = 0; f < Math.max(1, shape.fields); f++) sb.append("    Test f").append(f).append(";\n");
+        sb.append("\n    public static void main(String[] args) {\n");
+        sb.append("        m0(new Test());\n    }\n");
+        for (int m = 0; m < Math.max(1, shape.methods); m++) method(sb, shape, m, rnd);
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static void method(StringBuilder sb, Shape shape, int m, Random rnd) {
+        int locals = Math.max(1, shape.locals);
+        sb.append("\n    static void m").append(m).append("(Test p) {\n");
+        for (int l = 0; l < locals; l++) sb.append("        Test l").append(l).append(" = p;\n");
+        sb.append("        int k = 0;\n");
+
+        int n = shape.statements;
+        int loopFrom = n / 3;
+        int loopTo = n - n / 3;
+        String indent = "        ";
+        int allocations = 0;
+        boolean opened = false;
+        boolean closed = false;
+        int i = 0;
+        while (i < n) {
+            if (!opened && i >= loopFrom) {
+                opened = true;
+                for (int d = 0; d < shape.loopDepth; d++) {
+                    sb.append(indent).append("for (int i").append(d).append(" = 0; i").append(d)
+                        .append(" < 10; i").append(d).append("++) {\n");
+                    indent += "    ";
+                }
+            }
+            if (opened && !closed && i >= loopTo) {
+                closed = true;
+                for (int d = 0; d < shape.loopDepth; d++) {
+                    indent = indent.substring(4);
+                    sb.append(indent).append("}\n");
+                }
+            }
+
+            // allocations are spread evenly over the method
+            if (allocations < shape.sites && (long) i * shape.sites >= (long) allocations * n) {
+                sb.append(indent).append(local(rnd, locals)).append(" = new Test();\n");
+                allocations++;
+                i++;
+            } else if (shape.fanIn > 1 && i % 10 == 9 && i + shape.fanIn <= n) {
+                // fanIn paths that join after the switch
+                sb.append(indent).append("switch (k++ % ").append(shape.fanIn).append(") {\n");
+                for (int c = 0; c < shape.fanIn; c++) {
+                    sb.append(indent).append(c + 1 < shape.fanIn ? "    case " + c + ":\n" : "    default:\n");
+                    sb.append(indent).append("        ").append(statement(shape, m, rnd, locals)).append("\n");
+                    sb.append(indent).append("        break;\n");
+                }
+                sb.append(indent).append("}\n");
+                i += shape.fanIn;
+            } else {
+                sb.append(indent).append(statement(shape, m, rnd, locals)).append("\n");
+                i++;
+            }
+        }
+        while (indent.length() > 8) {
+            indent = indent.substring(4);
+            sb.append(indent).append("}\n");
+        }
+        sb.append("    }\n");
+    }
+
+    private static String statement(Shape shape, int m, Random rnd, int locals) {
+        String x = local(rnd, locals);
+        String y = local(rnd, locals);
+        String f = "f" + rnd.nextInt(Math.max(1, shape.fields));
+        // calls only go to later methods, so the call graph is acyclic
+        if (m + 1 < shape.methods && rnd.nextInt(100) < shape.callPercent)
+            return "m" + (m + 1 + rnd.nextInt(shape.methods - m - 1)) + "(" + y + ");";
+        switch (rnd.nextInt(3)) {
+            case 0: return x + " = " + y + ";";
+            case 1: return x + " = " + y + "." + f + ";";
+            default: return x + "." + f + " = " + y + ";";
+        }
+    }
+
+    private static String local(Random rnd, int locals) {
+        return "l" + rnd.nextInt(locals);
+    }
+}
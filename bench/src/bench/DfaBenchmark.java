@@ -0,0 +1,73 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import soot.Body;
+
+/*
+ * Throughput of the points-to dataflow engine. `source` is either
+ * "synthetic" (shaped by the other parameters) or a testcase directory
+ * such as "Test1", whose largest method is used.
+ * Run with -prof gc for allocation rates, see bench/run.sh.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DfaBenchmark {
+
+    @Param({"synthetic"})
+    public String source;
+
+    @Param({"1000"})
+    public int units;
+
+    @Param({"50"})
+    public int sites;
+
+    @Param({"8"})
+    public int fields;
+
+    @Param({"2"})
+    public int loopDepth;
+
+    @Param({"5"})
+    public int callPercent;
+
+    @Param({"./testcases"})
+    public String testcases;
+
+    private Body body;
+    private Engine engine;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        body = source.equals("synthetic")
+            ? Bodies.synthetic(units, sites, fields, loopDepth, callPercent, 42)
+            : Bodies.testcase(testcases + "/" + source);
+        engine = Engine.load();
+        engine.prepare(body);
+    }
+
+    @Benchmark
+    public void internalTransform() {
+        engine.transform(body);
+    }
+
+    @Benchmark
+    public int dataFlow() {
+        return engine.dataFlowAll();
+    }
+
+    @Benchmark
+    public int joinIn() {
+        return engine.joinAll();
+    }
+
+    @Benchmark
+    public int copy() {
+        return engine.copyAll();
+    }
+}
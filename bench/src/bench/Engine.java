@@ -0,0 +1,34 @@
+package bench;
+
+import soot.Body;
+
+/*
+ * What the benchmarks call on the dataflow engine. AnalysisTransformer lives
+ * in the default package, which JMH benchmarks cannot import, so the
+ * implementation (DfaEngine) is loaded by name.
+ */
+public interface Engine {
+
+    // AnalysisTransformer.internalTransform on the body
+    void transform(Body body);
+
+    // solves the body once and keeps its IN/OUT states for the calls below
+    void prepare(Body body);
+
+    // dataFlow on every unit with its fixpoint IN
+    int dataFlowAll();
+
+    // joinIn of every unit's predecessor OUTs into a fresh state
+    int joinAll();
+
+    // State.copy of every fixpoint IN
+    int copyAll();
+
+    static Engine load() {
+        try {
+            return (Engine) Class.forName("DfaEngine").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("DfaEngine not on the classpath", e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package bench;
+
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/*
+ * One call of a prepared program's main method, see Programs. The programs'
+ * own output is discarded. Run through ProgramTable, which prepares the
+ * programs and sets `work`.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgramBenchmark {
+
+    private static final String[] ARGS = new String[0];
+
+    @Param({"bench/target/programs"})
+    public String work;
+
+    @Param({"Test1"})
+    public String program;
+
+    @Param({"original", "rewritten"})
+    public String variant;
+
+    private MethodHandle main;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Path dir = Programs.dir(Paths.get(work), program, variant);
+        ClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()},
+            ClassLoader.getSystemClassLoader().getParent());
+        Method m = loader.loadClass(Programs.mainClass(dir)).getDeclaredMethod("main", String[].class);
+        m.setAccessible(true);
+        main = MethodHandles.lookup().unreflect(m);
+        stdout = System.out;
+        System.setOut(Programs.NULL);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public void run() throws Throwable {
+        main.invokeExact(ARGS);
+    }
+}
@@ -0,0 +1,127 @@
+package bench;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.*;
+import java.util.*;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Prepares every program (see Programs), checks that the rewritten variant
+ * prints what the original prints, counts its getfield instructions (in the
+ * class files and executed per run), times it with ProgramBenchmark and
+ * prints one markdown row per program and variant. The table is also
+ * written to bench/results/programs-<version>.md so that it can be compared
+ * across analysis versions.
+ *
+ *   ProgramTable [-version V] [source dir...] [-- JMH options]
+ *
+ * Without source dirs it uses testcases/Test* and bench/programs/*.
+ */
+public final class ProgramTable {
+
+    private ProgramTable() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String version = "dev";
+        List<Path> sources = new ArrayList<>();
+        List<String> jmhArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--")) {
+                jmhArgs.addAll(Arrays.asList(args).subList(i + 1, args.length));
+                break;
+            } else if (args[i].equals("-version") && i + 1 < args.length) {
+                version = args[++i];
+            } else {
+                sources.add(Paths.get(args[i]));
+            }
+        }
+        if (sources.isEmpty()) {
+            sources.addAll(list(Paths.get("testcases"), "Test*"));
+            sources.addAll(list(Paths.get("bench/programs"), "*"));
+        }
+
+        Path work = Paths.get("bench/target/programs");
+        List<String> programs = new ArrayList<>();
+        Map<String, int[]> sites = new HashMap<>();
+        Map<String, long[]> executed = new HashMap<>();
+        for (Path source : sources) {
+            // programs that cannot be analysed, or that fail when run, are left out of the table
+            try {
+                String p = Programs.prepare(source, work);
+                // a rewrite that changes what the program prints must not show up as a speed-up
+                if (!Programs.output(Programs.dir(work, p, "original"))
+                        .equals(Programs.output(Programs.dir(work, p, "rewritten")))) {
+                    System.err.println("skipping " + source + ": the rewritten program prints something else");
+                    continue;
+                }
+                int[] s = new int[Programs.VARIANTS.length];
+                long[] e = new long[Programs.VARIANTS.length];
+                for (int v = 0; v < Programs.VARIANTS.length; v++) {
+                    Path dir = Programs.dir(work, p, Programs.VARIANTS[v]);
+                    s[v] = Programs.getfieldSites(dir);
+                    e[v] = Programs.getfieldsExecuted(dir);
+                }
+                programs.add(p);
+                sites.put(p, s);
+                executed.put(p, e);
+            } catch (InvocationTargetException e) {
+                System.err.println("skipping " + source + ": the program throws " + e.getCause());
+            } catch (IOException | RuntimeException e) {
+                System.err.println("skipping " + source + ": " + e.getMessage());
+            }
+        }
+        if (programs.isEmpty()) throw new IllegalStateException("no program could be prepared");
+
+        Options options = new OptionsBuilder()
+            .parent(new CommandLineOptions(jmhArgs.toArray(new String[0])))
+            .include(ProgramBenchmark.class.getName() + ".run")
+            .param("work", work.toAbsolutePath().toString())
+            .param("program", programs.toArray(new String[0]))
+            .param("variant", Programs.VARIANTS)
+            .build();
+        Map<String, double[]> score = new HashMap<>();
+        for (RunResult r : new Runner(options).run()) {
+            String key = r.getParams().getParam("program") + "/" + r.getParams().getParam("variant");
+            score.put(key, new double[] {r.getPrimaryResult().getScore(), r.getPrimaryResult().getScoreError()});
+        }
+
+        StringBuilder table = new StringBuilder();
+        table.append("analysis version: ").append(version).append("\n\n");
+        table.append("| program | variant | getfield sites | getfields/op | ns/op | error | vs original |\n");
+        table.append("|---|---|---:|---:|---:|---:|---:|\n");
+        for (String p : programs) {
+            double[] base = score.get(p + "/original");
+            for (int v = 0; v < Programs.VARIANTS.length; v++) {
+                double[] s = score.get(p + "/" + Programs.VARIANTS[v]);
+                table.append(String.format(Locale.ROOT, "| %s | %s | %d | %d | %.1f | %.1f | %.2fx |%n",
+                    p, Programs.VARIANTS[v], sites.get(p)[v], executed.get(p)[v],
+                    s[0], s[1], s[0] / base[0]));
+            }
+        }
+
+        System.out.println();
+        System.out.print(table);
+        Path out = Paths.get("bench/results/programs-" + version + ".md");
+        Files.createDirectories(out.getParent());
+        Files.write(out, table.toString().getBytes("UTF-8"));
+        System.out.println("\nwritten to " + out);
+    }
+
+    private static List<Path> list(Path dir, String glob) throws IOException {
+        List<Path> found = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return found;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir, glob)) {
+            for (Path p : entries) {
+                if (Files.isDirectory(p)) found.add(p);
+            }
+        }
+        Collections.sort(found);
+        return found;
+    }
+}
@@ -0,0 +1,206 @@
+package bench;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+import javax.tools.ToolProvider;
+import org.objectweb.asm.*;
+
+/*
+ * Whole programs to run before and after load elimination. A program is
+ * prepared into <work>/<name>/original and <work>/<name>/rewritten, the
+ * latter written by PA2 -rewrite. Sources are directories such as
+ * testcases/TestN or bench/programs/<name>.
+ */
+public final class Programs {
+
+    public static final String[] VARIANTS = {"original", "rewritten"};
+
+    static final PrintStream NULL = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+    });
+
+    private Programs() {
+    }
+
+    public static Path dir(Path work, String program, String variant) {
+        return work.resolve(program).resolve(variant);
+    }
+
+    // the class whose main method is the program
+    public static String mainClass(Path dir) {
+        return Files.exists(dir.resolve("Test.class")) ? "Test" : "Main";
+    }
+
+    // compiles or copies the source into original/ and rewrites it into rewritten/, returns the program name
+    public static String prepare(Path source, Path work) throws IOException {
+        String name = source.getFileName().toString();
+        Path original = dir(work, name, "original");
+        Path rewritten = dir(work, name, "rewritten");
+        clear(work.resolve(name));
+        Files.createDirectories(original);
+
+        // sources are compiled for Java 8 so that any JVM can run them; bare class files are copied
+        List<Path> classes = new ArrayList<>();
+        List<String> sources = new ArrayList<>();
+        try (Stream<Path> files = Files.list(source)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                String file = f.getFileName().toString();
+                if (file.endsWith(".class")) classes.add(f);
+                else if (file.endsWith(".java")) sources.add(f.toString());
+            }
+        }
+        if (sources.isEmpty()) {
+            for (Path f : classes) Files.copy(f, original.resolve(f.getFileName()));
+        } else {
+            List<String> args = new ArrayList<>(Arrays.asList(
+                "--release", "8", "-nowarn", "-encoding", "UTF-8", "-d", original.toString()));
+            args.addAll(sources);
+            if (ToolProvider.getSystemJavaCompiler().run(null, null, null, args.toArray(new String[0])) != 0)
+                throw new IOException("cannot compile " + source);
+        }
+
+        try {
+            pa2(original.toString(), "-rewrite", "-d", rewritten.toString());
+        } catch (InvocationTargetException e) {
+            throw new IOException("PA2 -rewrite failed on " + name + ": " + e.getCause(), e.getCause());
+        }
+        return name;
+    }
+
+    // runs PA2 in this JVM; it is in the default package, so it is reached by reflection
+    static void pa2(String... args) throws InvocationTargetException {
+        try {
+            Class.forName("PA2").getMethod("main", String[].class).invoke(null, (Object) args);
+        } catch (InvocationTargetException e) {
+            throw e;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void clear(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path f : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(f);
+        }
+    }
+
+    // getfield instructions in the class files of dir
+    public static int getfieldSites(Path dir) throws IOException {
+        int[] count = new int[1];
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                if (!f.toString().endsWith(".class")) continue;
+                new ClassReader(Files.readAllBytes(f)).accept(new ClassVisitor(Opcodes.ASM9) {
+                    @Override
+                    public MethodVisitor visitMethod(int access, String name, String desc, String sig, String[] exc) {
+                        return new MethodVisitor(Opcodes.ASM9) {
+                            @Override
+                            public void visitFieldInsn(int opcode, String owner, String fname, String fdesc) {
+                                if (opcode == Opcodes.GETFIELD) count[0]++;
+                            }
+                        };
+                    }
+                }, 0);
+            }
+        }
+        return count[0];
+    }
+
+    // what one run of the program prints on System.out
+    public static String output(Path dir) throws Exception {
+        ClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()},
+            ClassLoader.getSystemClassLoader().getParent());
+        Method main = loader.loadClass(mainClass(dir)).getDeclaredMethod("main", String[].class);
+        main.setAccessible(true);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(bytes, true, "UTF-8"));
+        try {
+            main.invoke(null, (Object) new String[0]);
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toString("UTF-8");
+    }
+
+    // getfield instructions executed by one run of the program
+    public static long getfieldsExecuted(Path dir) throws Exception {
+        getfields = 0;
+        Class<?> c = new CountingLoader(dir).loadClass(mainClass(dir));
+        Method main = c.getDeclaredMethod("main", String[].class);
+        main.setAccessible(true);
+        PrintStream out = System.out;
+        System.setOut(NULL);
+        try {
+            main.invoke(null, (Object) new String[0]);
+        } finally {
+            System.setOut(out);
+        }
+        return getfields;
+    }
+
+    private static long getfields;
+
+    // called before every getfield of a class loaded by CountingLoader
+    public static void countGetfield() {
+        getfields++;
+    }
+
+    // loads the classes of dir with a call to countGetfield in front of each getfield
+    private static final class CountingLoader extends ClassLoader {
+        private final Path dir;
+
+        CountingLoader(Path dir) {
+            super(Programs.class.getClassLoader());
+            this.dir = dir;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            synchronized (getClassLoadingLock(name)) {
+                Path file = dir.resolve(name.replace('.', '/') + ".class");
+                if (!Files.exists(file)) return super.loadClass(name, resolve);
+                Class<?> c = findLoadedClass(name);
+                if (c == null) {
+                    byte[] bytes;
+                    try {
+                        bytes = instrument(Files.readAllBytes(file));
+                    } catch (IOException e) {
+                        throw new ClassNotFoundException(name, e);
+                    }
+                    c = defineClass(name, bytes, 0, bytes.length);
+                }
+                if (resolve) resolveClass(c);
+                return c;
+            }
+        }
+
+        private static byte[] instrument(byte[] bytes) {
+            ClassReader reader = new ClassReader(bytes);
+            ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+            reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String desc, String sig, String[] exc) {
+                    return new MethodVisitor(Opcodes.ASM9, super.visitMethod(access, name, desc, sig, exc)) {
+                        @Override
+                        public void visitFieldInsn(int opcode, String owner, String fname, String fdesc) {
+                            if (opcode == Opcodes.GETFIELD)
+                                super.visitMethodInsn(Opcodes.INVOKESTATIC, "bench/Programs", "countGetfield", "()V", false);
+                            super.visitFieldInsn(opcode, owner, fname, fdesc);
+                        }
+                    };
+                }
+            }, 0);
+            return writer.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package bench;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/*
+ * Scaling curve of PA2 over generated programs (see Corpus). One shape
+ * parameter takes each of the given values while the others keep their
+ * defaults or -set values. Each point is analysed in this JVM after a
+ * warm-up run. For each point the sweep records the Jimple units, the wall
+ * time, the analysis time (fixpoint plus the redundant-load check, from
+ * PA2 -metrics) and the peak heap.
+ *
+ *   Sweep -vary statements -values 250,500,1000,2000 [-set fanIn=4,loopDepth=2] [-- PA2 options]
+ *
+ * Prints a table and text charts, and the exponent k of a least-squares fit
+ * time ~ units^k. A k clearly above 1 flags super-linear behaviour. The
+ * points go to bench/target/sweep-<parameter>.csv.
+ */
+public final class Sweep {
+
+    private static final class Point {
+        long value;
+        long units;
+        double wallMs;
+        double analysisMs;
+        double heapMb;
+    }
+
+    private Sweep() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String vary = "statements";
+        List<Long> values = new ArrayList<>(Arrays.asList(250L, 500L, 1000L, 2000L, 4000L));
+        Corpus.Shape base = new Corpus.Shape();
+        List<String> pa2Args = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--")) {
+                pa2Args.addAll(Arrays.asList(args).subList(i + 1, args.length));
+                break;
+            } else if (args[i].equals("-vary") && i + 1 < args.length) {
+                vary = args[++i];
+            } else if (args[i].equals("-values") && i + 1 < args.length) {
+                values.clear();
+                for (String v : args[++i].split(",")) values.add(Long.parseLong(v.trim()));
+            } else if (args[i].equals("-set") && i + 1 < args.length) {
+                for (String kv : args[++i].split(",")) {
+                    String[] p = kv.split("=");
+                    base.set(p[0].trim(), Long.parseLong(p[1].trim()));
+                }
+            } else {
+                throw new IllegalArgumentException("unknown argument " + args[i]);
+            }
+        }
+        base.set(vary, values.get(0));
+
+        Path work = Paths.get("bench/target/corpus");
+        System.err.println("warm-up on " + vary + "=" + values.get(0));
+        measure(generate(base, work.resolve("warmup")), pa2Args, work);
+
+        List<Point> points = new ArrayList<>();
+        for (long v : values) {
+            Corpus.Shape shape = base.copy();
+            shape.set(vary, v);
+            System.err.println(vary + "=" + v + ": " + shape);
+            Point p = measure(generate(shape, work.resolve(vary + "-" + v)), pa2Args, work);
+            p.value = v;
+            points.add(p);
+        }
+
+        report(vary, points, System.out);
+        Path csv = Paths.get("bench/target/sweep-" + vary + ".csv");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(csv))) {
+            out.println(vary + ",units,wallMs,analysisMs,peakHeapMb");
+            for (Point p : points) {
+                out.printf(Locale.ROOT, "%d,%d,%.1f,%.1f,%.1f%n", p.value, p.units, p.wallMs, p.analysisMs, p.heapMb);
+            }
+        }
+        System.out.println("\nwritten to " + csv);
+    }
+
+    private static Path generate(Corpus.Shape shape, Path dir) throws IOException {
+        Corpus.write(shape, dir);
+        return dir;
+    }
+
+    // one PA2 run over dir, with its results discarded
+    private static Point measure(Path dir, List<String> pa2Args, Path work) throws Exception {
+        Path metrics = work.resolve("metrics.csv");
+        List<String> args = new ArrayList<>(Arrays.asList(dir.toString(), "-metrics", metrics.toString(),
+            "-d", work.resolve("out").toString()));
+        args.addAll(pa2Args);
+
+        System.gc();
+        List<MemoryPoolMXBean> heap = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heap.add(pool);
+            }
+        }
+
+        PrintStream out = System.out;
+        System.setOut(Programs.NULL);
+        long start = System.nanoTime();
+        try {
+            Programs.pa2(args.toArray(new String[0]));
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("PA2 failed on " + dir, e.getCause());
+        } finally {
+            System.setOut(out);
+        }
+
+        Point p = new Point();
+        p.wallMs = (System.nanoTime() - start) / 1e6;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heap) peak += pool.getPeakUsage().getUsed();
+        p.heapMb = peak / (1024.0 * 1024.0);
+
+        // columns as written by Metrics.writeCsv
+        List<String> lines = Files.readAllLines(metrics);
+        List<String> columns = Arrays.asList(lines.get(0).split(","));
+        int units = columns.indexOf("units");
+        int fixpoint = columns.indexOf("fixpointMicros");
+        int check = columns.indexOf("checkMicros");
+        long micros = 0;
+        for (String line : lines.subList(1, lines.size())) {
+            // target and method are quoted and may contain commas, so count from the end
+            String[] f = line.split(",");
+            int shift = f.length - columns.size();
+            p.units += Long.parseLong(f[units + shift]);
+            micros += Long.parseLong(f[fixpoint + shift]) + Long.parseLong(f[check + shift]);
+        }
+        p.analysisMs = micros / 1000.0;
+        return p;
+    }
+
+    private static void report(String vary, List<Point> points, PrintStream out) {
+        out.println();
+        out.printf("%12s %10s %10s %12s %10s%n", vary, "units", "wall ms", "analysis ms", "heap MB");
+        for (Point p : points) {
+            out.printf(Locale.ROOT, "%12d %10d %10.1f %12.1f %10.1f%n", p.value, p.units, p.wallMs, p.analysisMs, p.heapMb);
+        }
+
+        out.println("\nanalysis ms");
+        chart(points, p -> p.analysisMs, out);
+        out.println("\npeak heap MB");
+        chart(points, p -> p.heapMb, out);
+
+        double k = exponent(points);
+        out.printf(Locale.ROOT, "%nanalysis time ~ units^%.2f%s%n", k, k > 1.2 ? "  (super-linear)" : "");
+    }
+
+    private static void chart(List<Point> points, ToDoubleFunction<Point> metric, PrintStream out) {
+        double max = 0;
+        for (Point p : points) max = Math.max(max, metric.applyAsDouble(p));
+        for (Point p : points) {
+            double v = metric.applyAsDouble(p);
+            int width = max == 0 ? 0 : (int) Math.round(60 * v / max);
+            out.printf(Locale.ROOT, "%10d units |%s %.1f%n", p.units, repeat('#', width), v);
+        }
+    }
+
+    private static String repeat(char c, int n) {
+        char[] cs = new char[n];
+        Arrays.fill(cs, c);
+        return new String(cs);
+    }
+
+    // least-squares slope of log(analysis time) over log(units)
+    private static double exponent(List<Point> points) {
+        int n = 0;
+        double sx = 0, sy = 0, sxx = 0, sxy = 0;
+        for (Point p : points) {
+            if (p.units <= 0 || p.analysisMs <= 0) continue;
+            double x = Math.log(p.units);
+            double y = Math.log(p.analysisMs);
+            sx += x;
+            sy += y;
+            sxx += x * x;
+            sxy += x * y;
+            n++;
+        }
+        if (n < 2) return Double.NaN;
+        return (n * sxy - sx * sy) / (n * sxx - sx * sx);
+    }
+}
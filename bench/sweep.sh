@@ -0,0 +1,20 @@
+#!/bin/sh
+# Scaling curve of PA2 over generated programs: time and peak heap against
+# size, see bench/src/bench/Sweep.java.
+#   SOOT_CP  classpath of soot and its dependencies
+#   JMH_CP   jmh-core, jmh-generator-annprocess, jopt-simple and commons-math3
+# Arguments go to bench.Sweep.
+#   bench/sweep.sh
+#   bench/sweep.sh -vary fanIn -values 2,4,8,16 -set statements=2000
+#   bench/sweep.sh -vary sites -values 10,100,1000 -- -sparse -delta
+set -e
+cd "$(dirname "$0")/.."
+: "${SOOT_CP:?set SOOT_CP to the soot classpath}"
+: "${JMH_CP:?set JMH_CP to the JMH classpath}"
+
+out=bench/target/classes
+rm -rf "$out"
+mkdir -p "$out"
+javac -nowarn -cp "$SOOT_CP:$JMH_CP" -d "$out" *.java bench/src/*.java bench/src/bench/*.java
+
+exec java -Xmx4g -cp "$out:$SOOT_CP:$JMH_CP" bench.Sweep "$@"
@@ -0,0 +1,26 @@
+class A {
+    A f;
+}
+
+class B {
+    B(A a) {
+        a.f = new A();
+    }
+}
+
+public class Test {
+    static void helper(A p) {
+        new B(p);
+    }
+
+    public static void main(String[] args) {
+        A a = new A();
+        a.f = new A();
+        A x = a.f;
+        new B(a);
+        A y = a.f;      // not redundant with -summaries: B's constructor wrote a.f
+        A z = a.f;      // redundant
+        helper(a);
+        A w = a.f;      // not redundant: helper wrote a.f through B's constructor
+    }
+}
@@ -0,0 +1,18 @@
+class A {
+    A f;
+}
+
+public class Test {
+    public static void main(String[] args) {
+        A b = new A();
+        A x = b;
+        for (int i = 0; i < args.length; i++) {
+            x = new A();
+            A y = x.f;      // not redundant: x.f of the last iteration was collected along with its object (reported with -no-gc)
+            x.f = b;
+            A z = x.f;      // redundant
+            x = b;
+        }
+        A w = x.f;
+    }
+}